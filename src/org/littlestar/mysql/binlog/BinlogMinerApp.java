@@ -18,13 +18,21 @@ package org.littlestar.mysql.binlog;
 
 import java.io.File;
 import java.io.IOException;
-import java.lang.Thread.State;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.ByteOrder;
 import java.sql.Connection;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Formatter;
@@ -34,6 +42,12 @@ import java.util.logging.Logger;
 
 import org.littlestar.helper.LogRecordFormatter;
 import org.littlestar.mysql.binlog.miner.BinlogMiner;
+import org.littlestar.mysql.binlog.miner.MinerOutput;
+import org.littlestar.mysql.binlog.miner.MinerSpoolOutput;
+import org.littlestar.mysql.binlog.miner.MinerStreamOutput;
+import org.littlestar.mysql.binlog.miner.MinerTableOutput;
+import org.littlestar.mysql.binlog.parser.BinlogFileMappingPool;
+import org.littlestar.mysql.binlog.parser.BinlogTableFilter;
 
 public class BinlogMinerApp {
 	public static final String CFG_FILE = System.getProperty("user.dir") + File.separator + "miner.xml";
@@ -132,6 +146,85 @@ public class BinlogMinerApp {
 		return bd.doubleValue();
 	}
 	
+	/**
+	 * Mining one binlog file in the worker pool. The miner is created in the worker thread, so the 
+	 * parsers which share the mapping pool are opened in their own threads. When spooled, the
+	 * statements are written to a temporary spool, which is replayed to the output in order of
+	 * binlog files by the main thread.
+	 */
+	private static class MiningTask implements Callable<MinerSpoolOutput> {
+		private final File file;
+		private final ByteOrder byteOrder;
+		private final String charset;
+		private final BinlogTableFilter tableFilter;
+		private final BinlogFileMappingPool mappingPool;
+		private final boolean spooled;
+		private ForkJoinPool decodePool = null;
+		private long chunkSize = 0L;
+		private int pipelineWorkers = 0;
+		private int pipelineCapacity = 0;
+		private Connection outputConnection = null;
+		private String outputTableName = null;
+		private Connection referenceConnection = null;
+		private String referenceTableName = null;
+		private volatile BinlogMiner miner = null;
+		
+		MiningTask(File file, ByteOrder byteOrder, String charset, BinlogTableFilter tableFilter,
+				BinlogFileMappingPool mappingPool, boolean spooled) {
+			this.file = file;
+			this.byteOrder = byteOrder;
+			this.charset = charset;
+			this.tableFilter = tableFilter;
+			this.mappingPool = mappingPool;
+			this.spooled = spooled;
+		}
+		
+		@Override
+		public MinerSpoolOutput call() throws Exception {
+			BinlogMiner miner;
+			try {
+				miner = BinlogMiner.newMiner(file.toString(), byteOrder, charset, tableFilter, mappingPool);
+			} catch (Throwable e) {
+				throw new IOException("Open binlog '" + file.toString() + "' failed.", e);
+			}
+			MinerSpoolOutput spool = null;
+			if (spooled) {
+				spool = MinerSpoolOutput.newSpool(file.getName() + ".");
+				miner.withOutput(spool);
+			} else if (outputConnection != null) {
+				miner.withOutputConnection(outputConnection).withOutputTable(outputTableName);
+			}
+			if (decodePool != null) {
+				miner.withChunkDecoding(decodePool, chunkSize);
+			} else if (pipelineWorkers > 0) {
+				miner.withPipeline(pipelineWorkers, pipelineCapacity);
+			}
+			if (referenceConnection != null) {
+				miner.withReferenceConnection(referenceConnection).withReferenceTable(referenceTableName);
+			}
+			this.miner = miner;
+			miner.run();
+			return spool;
+		}
+		
+		String getProgress() throws IOException {
+			BinlogMiner miner = this.miner;
+			if (miner == null) {
+				return file.getName() + ": waiting.";
+			}
+			long fileSize = miner.getBinlogFileSize();
+			long proccessed = miner.getProcessedBytes();
+			double s = fileSize;
+			double p = proccessed;
+			double pct = (p / s) * 100;
+			String progress = file.getName() + ": " + proccessed + " of " + fileSize + " bytes, " + round(pct, 2) + "% done.";
+			if (pipelineWorkers > 0 && decodePool == null) {
+				progress += " Queue depth: decode " + miner.getDecodeQueueDepth() + ", sink " + miner.getSinkQueueDepth() + ".";
+			}
+			return progress;
+		}
+	}
+	
 	public static void main(String[] args) throws SecurityException, IOException  {
 		LinkedHashSet<File> binlogFiles;
 		initLogger();
@@ -162,6 +255,7 @@ public class BinlogMinerApp {
 		
 		ByteOrder byteOrder = config.getByteOrder();
 		String charset = config.getDefaultCharset();
+		BinlogTableFilter tableFilter = config.getTableFilter();
 		boolean withOutputTable = false;
 		String outputTableName = config.getOutputTableName();
 		Connection outputConnection = config.getOutputConnection();
@@ -183,43 +277,88 @@ public class BinlogMinerApp {
 			withReferenceTable = checkReferenceTable(referenceConnection, referenceTableName);
 		}
 		
-		for(File file : binlogFiles) {
-			logger.info("Mining Binlog '"+file.toString()+" ... ");
+		// mining n files concurrently, the spools are replayed to the output in order of binlog files.
+		int parallelism = Math.min(config.getParallelism(), binlogFiles.size());
+		boolean spooled = parallelism > 1;
+		BinlogFileMappingPool mappingPool = null;
+		if (config.getMaxMappedBytes() > 0) {
+			mappingPool = new BinlogFileMappingPool(config.getMaxMappedBytes());
+		}
+		// decoding the chunks of binlog files, shared by the miners.
+		ForkJoinPool decodePool = null;
+		if (config.getDecodeParallelism() > 1) {
+			decodePool = new ForkJoinPool(config.getDecodeParallelism());
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		ArrayList<MiningTask> tasks = new ArrayList<MiningTask>();
+		ArrayList<Future<MinerSpoolOutput>> futures = new ArrayList<Future<MinerSpoolOutput>>();
+		for (File file : binlogFiles) {
+			MiningTask task = new MiningTask(file, byteOrder, charset, tableFilter, mappingPool, spooled);
+			if (withOutputTable) {
+				task.outputConnection = outputConnection;
+				task.outputTableName = outputTableName;
+			}
+			if (withReferenceTable) {
+				task.referenceConnection = referenceConnection;
+				task.referenceTableName = referenceTableName;
+			}
+			task.decodePool = decodePool;
+			task.chunkSize = config.getChunkSize();
+			task.pipelineWorkers = config.getPipelineWorkers();
+			task.pipelineCapacity = config.getPipelineCapacity();
+			tasks.add(task);
+			futures.add(executor.submit(task));
+		}
+		executor.shutdown();
+		
+		MinerOutput output = null;
+		if (spooled) {
+			output = withOutputTable ? new MinerTableOutput(outputConnection, outputTableName)
+					: new MinerStreamOutput(System.out);
+		}
+		int i = 0;
+		for (File file : binlogFiles) {
+			logger.info("Mining Binlog '" + file.toString() + " ... ");
+			MiningTask task = tasks.get(i);
+			Future<MinerSpoolOutput> future = futures.get(i++);
+			MinerSpoolOutput spool = null;
 			try {
-				BinlogMiner miner = BinlogMiner.newMiner(file.toString(), byteOrder, charset);
-				if (withOutputTable) {
-					miner.withOutputConnection(outputConnection).withOutputTable(outputTableName);
-				}
-				if (withReferenceTable) {
-					miner.withReferenceConnection(referenceConnection).withReferenceTable(referenceTableName);
-				}
-				miner.start();
-				//
-				while (withOutputTable) {
-					if (miner != null) {
-						long fileSize = miner.getBinlogFileSize();
-						long proccessed = miner.getProcessedBytes();
-						double s = fileSize;
-						double p = proccessed;
-						double pct = (p / s) * 100;
-
-						logger.info("Thread: " + miner.getState() + ", " + proccessed + " of " + fileSize + " bytes, "
-								+ round(pct, 2) + "% done.");
-						if (miner.getState() == State.TERMINATED) {
-							logger.info("done.");
-							break;
-						}
-						try {
-							Thread.sleep(2000L);
-						} catch (Throwable e) {
-						}
-					} else {
+				while (true) {
+					try {
+						spool = future.get(2L, TimeUnit.SECONDS);
 						break;
+					} catch (TimeoutException e) {
+						if (withOutputTable) {
+							logger.info(task.getProgress());
+						}
 					}
 				}
-				//
+				if (spool != null) {
+					spool.replay(output);
+				}
+				logger.info("done.");
+			} catch (InterruptedException e) {
+				logger.log(Level.SEVERE, "Interrupted, ending ...", e);
+				executor.shutdownNow();
+				break;
+			} catch (ExecutionException e) {
+				logger.log(Level.SEVERE, "Miner thread throw exception.", e.getCause());
 			} catch (Throwable e) {
 				logger.log(Level.SEVERE, "Miner thread throw exception.", e);
+			} finally {
+				if (spool != null) {
+					spool.delete();
+				}
+			}
+		}
+		if (decodePool != null) {
+			decodePool.shutdown();
+		}
+		if (output != null) {
+			try {
+				output.close();
+			} catch (Throwable e) {
+				logger.log(Level.WARNING, "", e);
 			}
 		}
 		logger.info("All binlogs has bend analysed, ending ...");
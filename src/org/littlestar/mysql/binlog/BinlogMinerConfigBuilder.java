@@ -26,6 +26,7 @@ import java.util.logging.Logger;
 
 import org.littlestar.helper.ConnectionFactory;
 import org.littlestar.helper.XmlHelper;
+import org.littlestar.mysql.binlog.parser.BinlogTableFilter;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -45,6 +46,14 @@ public class BinlogMinerConfigBuilder {
 
 	private static final String ELEMENT_TAG_REFTABLE = "ReferenceTable";
 	private static final String ELEMENT_ATTR_DSID = "dsid";
+	private static final String ELEMENT_TAG_INCLUDETABLES = "IncludeTables";
+	private static final String ELEMENT_TAG_EXCLUDETABLES = "ExcludeTables";
+	private static final String ELEMENT_TAG_PARALLELISM = "Parallelism";
+	private static final String ELEMENT_TAG_MAXMAPPEDMB = "MaxMappedMB";
+	private static final String ELEMENT_TAG_DECODEPARALLELISM = "DecodeParallelism";
+	private static final String ELEMENT_TAG_CHUNKSIZEMB = "ChunkSizeMB";
+	private static final String ELEMENT_TAG_PIPELINEWORKERS = "PipelineWorkers";
+	private static final String ELEMENT_TAG_PIPELINECAPACITY = "PipelineCapacity";
 
 	private LinkedHashSet<File> binlogFileSet = new LinkedHashSet<File>();
 	private String defaultCharset = null;
@@ -58,6 +67,14 @@ public class BinlogMinerConfigBuilder {
 	private String referenceTableName = null;
 	private String referenceDsid = null;
 	
+	private final BinlogTableFilter tableFilter = BinlogTableFilter.newFilter();
+	private int parallelism = 1;
+	private long maxMappedBytes = 0L;
+	private int decodeParallelism = 1;
+	private long chunkSize = 64L * 1024L * 1024L;
+	private int pipelineWorkers = 0;
+	private int pipelineCapacity = 1024;
+	
 	private void parseByteOrder(NodeList byteOrderNodeList) {
 		String strByteOrder = null;
 		if (byteOrderNodeList.getLength() > 0) {
@@ -170,6 +187,91 @@ public class BinlogMinerConfigBuilder {
 	}
 
 
+	
+	private void parseTableFilter(NodeList includeNodeList, NodeList excludeNodeList) {
+		for (int i = 0; i < includeNodeList.getLength(); i++) {
+			tableFilter.include(includeNodeList.item(i).getTextContent().trim());
+		}
+		for (int i = 0; i < excludeNodeList.getLength(); i++) {
+			tableFilter.exclude(excludeNodeList.item(i).getTextContent().trim());
+		}
+	}
+
+	private void parseParallelism(NodeList parallelismNodeList, NodeList maxMappedNodeList) {
+		if (parallelismNodeList.getLength() > 0) {
+			String str = parallelismNodeList.item(0).getTextContent().trim();
+			try {
+				parallelism = Math.max(1, Integer.parseInt(str));
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid parallelism '" + str + "', using 1.");
+			}
+		}
+		if (maxMappedNodeList.getLength() > 0) {
+			String str = maxMappedNodeList.item(0).getTextContent().trim();
+			try {
+				maxMappedBytes = Math.max(0L, Long.parseLong(str)) * 1024L * 1024L;
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid max mapped MB '" + str + "', ignore it.");
+			}
+		}
+	}
+
+	private void parseDecodeParallelism(NodeList decodeParallelismNodeList, NodeList chunkSizeNodeList) {
+		if (decodeParallelismNodeList.getLength() > 0) {
+			String str = decodeParallelismNodeList.item(0).getTextContent().trim();
+			try {
+				decodeParallelism = Math.max(1, Integer.parseInt(str));
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid decode parallelism '" + str + "', using 1.");
+			}
+		}
+		if (chunkSizeNodeList.getLength() > 0) {
+			String str = chunkSizeNodeList.item(0).getTextContent().trim();
+			try {
+				long size = Long.parseLong(str);
+				if (size > 0)
+					chunkSize = size * 1024L * 1024L;
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid chunk size MB '" + str + "', using " + (chunkSize >> 20) + ".");
+			}
+		}
+	}
+
+	/**
+	 * The chunk parsers of the decode threads hold a window of chunk size each, and the parser of the
+	 * miner holds the start of its file, so the mapping cap must hold (decode parallelism + 1) chunks.
+	 */
+	private void checkMaxMappedBytes() {
+		if (maxMappedBytes <= 0 || decodeParallelism <= 1)
+			return;
+		long minMappedBytes = (decodeParallelism + 1L) * chunkSize;
+		if (maxMappedBytes < minMappedBytes) {
+			logger.warning("Max mapped MB " + (maxMappedBytes >> 20)
+					+ " is less than (decode parallelism + 1) * chunk size MB, using " + (minMappedBytes >> 20) + ".");
+			maxMappedBytes = minMappedBytes;
+		}
+	}
+
+	private void parsePipeline(NodeList workersNodeList, NodeList capacityNodeList) {
+		if (workersNodeList.getLength() > 0) {
+			String str = workersNodeList.item(0).getTextContent().trim();
+			try {
+				pipelineWorkers = Math.max(0, Integer.parseInt(str));
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid pipeline workers '" + str + "', not pipelined.");
+			}
+		}
+		if (capacityNodeList.getLength() > 0) {
+			String str = capacityNodeList.item(0).getTextContent().trim();
+			try {
+				int capacity = Integer.parseInt(str);
+				if (capacity > 0)
+					pipelineCapacity = capacity;
+			} catch (NumberFormatException e) {
+				logger.warning("Invalid pipeline capacity '" + str + "', using " + pipelineCapacity + ".");
+			}
+		}
+	}
 
 	public BinlogMinerConfigBuilder(String[] args) {
 		int len = args.length;
@@ -201,6 +303,23 @@ public class BinlogMinerConfigBuilder {
 
 			NodeList referenceTableNodeList = root.getElementsByTagName(ELEMENT_TAG_REFTABLE);
 			parseReferenceTable(referenceTableNodeList);
+			
+			NodeList includeTablesNodeList = root.getElementsByTagName(ELEMENT_TAG_INCLUDETABLES);
+			NodeList excludeTablesNodeList = root.getElementsByTagName(ELEMENT_TAG_EXCLUDETABLES);
+			parseTableFilter(includeTablesNodeList, excludeTablesNodeList);
+			
+			NodeList parallelismNodeList = root.getElementsByTagName(ELEMENT_TAG_PARALLELISM);
+			NodeList maxMappedNodeList = root.getElementsByTagName(ELEMENT_TAG_MAXMAPPEDMB);
+			parseParallelism(parallelismNodeList, maxMappedNodeList);
+			
+			NodeList decodeParallelismNodeList = root.getElementsByTagName(ELEMENT_TAG_DECODEPARALLELISM);
+			NodeList chunkSizeNodeList = root.getElementsByTagName(ELEMENT_TAG_CHUNKSIZEMB);
+			parseDecodeParallelism(decodeParallelismNodeList, chunkSizeNodeList);
+			checkMaxMappedBytes();
+			
+			NodeList pipelineWorkersNodeList = root.getElementsByTagName(ELEMENT_TAG_PIPELINEWORKERS);
+			NodeList pipelineCapacityNodeList = root.getElementsByTagName(ELEMENT_TAG_PIPELINECAPACITY);
+			parsePipeline(pipelineWorkersNodeList, pipelineCapacityNodeList);
 		}
 	}
 
@@ -236,6 +355,55 @@ public class BinlogMinerConfigBuilder {
 		return referenceTableName;
 	}
 
+	/**
+	 * @return the schema/table filter, null if no IncludeTables/ExcludeTables configured.
+	 */
+	public BinlogTableFilter getTableFilter() {
+		return tableFilter.isEmpty() ? null : tableFilter;
+	}
+
+	/**
+	 * @return the number of binlog files mined concurrently, 1 (default) for one after another.
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the bytes limit of the file mappings shared by the parallel miners, 0 for no limit.
+	 */
+	public long getMaxMappedBytes() {
+		return maxMappedBytes;
+	}
+
+	/**
+	 * @return the number of threads decoding the chunks of a binlog file, 1 (default) for not split.
+	 */
+	public int getDecodeParallelism() {
+		return decodeParallelism;
+	}
+
+	/**
+	 * @return the chunk size of a binlog file decoded in parallel, 64 MB by default.
+	 */
+	public long getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * @return the number of render workers of the mining pipeline, 0 (default) for not pipelined.
+	 */
+	public int getPipelineWorkers() {
+		return pipelineWorkers;
+	}
+
+	/**
+	 * @return the capacity of the pipeline rings, 1024 by default.
+	 */
+	public int getPipelineCapacity() {
+		return pipelineCapacity;
+	}
+
 	private static String getString(Object object) {
 		String val = "null";
 		if (object != null)
@@ -256,7 +424,14 @@ public class BinlogMinerConfigBuilder {
 				.append("  Output Connection: ").append(getString(getOutputConnection())).append("\n")
 				.append("  Truncate Output table: ").append(getString(isTruncateOutputTable())).append("\n")
 				.append("  Reference Table: ").append(getString(getReferenceTableName())).append("\n")
-				.append("  Reference Connection: ").append(getString(getReferenceConnection())).append("\n");
+				.append("  Reference Connection: ").append(getString(getReferenceConnection())).append("\n")
+				.append("  Table Filter: ").append(getString(getTableFilter())).append("\n")
+				.append("  Parallelism: ").append(getParallelism()).append("\n")
+				.append("  Max Mapped Bytes: ").append(getMaxMappedBytes()).append("\n")
+				.append("  Decode Parallelism: ").append(getDecodeParallelism()).append("\n")
+				.append("  Chunk Size: ").append(getChunkSize()).append("\n")
+				.append("  Pipeline Workers: ").append(getPipelineWorkers()).append("\n")
+				.append("  Pipeline Capacity: ").append(getPipelineCapacity()).append("\n");
 		return builder.toString();
 	}
 }
@@ -36,6 +36,7 @@ import org.littlestar.mysql.binlog.event.EventType;
 import org.littlestar.mysql.binlog.event.body.EventBody;
 import org.littlestar.mysql.binlog.event.body.impl.GtidLogEventBody;
 import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.parser.BinlogFileIndex;
 import org.littlestar.mysql.binlog.parser.BinlogParser;
 import org.littlestar.mysql.binlog.parser.BinlogParserBuilder;
 import org.littlestar.mysql.binlog.parser.Gtid;
@@ -55,6 +56,7 @@ public class BinlogParserApp {
 	private static final String EVENTS_OPTION_NAME = "events";
 	private static final String EVENT_HEADER_ONLY = "event-header-only";
 	private static final String DISABLE_EVENT_BODY_DECODE = "disable-event-body-decode";
+	private static final String USE_INDEX_OPTION_NAME = "use-index";
 	
 	protected static Options options = getOptions();
 	public static void main(String[] args) throws Throwable {
@@ -167,6 +169,11 @@ public class BinlogParserApp {
 			headerOnly = true;
 		}
 		
+		boolean useIndex = false;
+		if (cli.hasOption(USE_INDEX_OPTION_NAME)) {
+			useIndex = true;
+		}
+		
 		boolean isDecodeBody = true;
 		if (cli.hasOption(DISABLE_EVENT_BODY_DECODE)) {
 			isDecodeBody = false;
@@ -182,7 +189,11 @@ public class BinlogParserApp {
 				.withByteOrder(order)
 				.decodeString(encodeString)
 				.withCharSet(charset)
-				.decodeEventBody(isDecodeBody);
+				.decodeEventBody(isDecodeBody)
+				.zeroCopy(true)
+				.lazyDecodeRows(headerOnly)
+				// the gtid range is checked by the bodies of GTID_LOG_EVENT.
+				.headerOnly(headerOnly && !gtidRange);
 		if (gtidRange) {
 			if (eventFilter != null) {
 				if (eventFilter.size() > 0) {
@@ -191,6 +202,10 @@ public class BinlogParserApp {
 				}
 			}
 			BinlogParser parser = builder.build();
+			if (useIndex && startGTID != null) {
+				// 跳到最后一个之前事务ID都小于--start-gtid的检查点;
+				parser.seek(BinlogFileIndex.getIndex(logFile, order).seekTransactionId(startGTID.getTransactionId()));
+			}
 			outputEvents(parser, startGTID, stopGTID, eventFilter, headerOnly);
 		} else if (datetimeRange) {
 			if (eventFilter != null) {
@@ -199,6 +214,10 @@ public class BinlogParserApp {
 				}
 			}
 			BinlogParser parser = builder.build();
+			if (useIndex && startDatetime > 0) {
+				// 跳到最后一个之前事件时间都早于--start-datetime的检查点;
+				parser.seek(BinlogFileIndex.getIndex(logFile, order).seekTimestamp(startDatetime));
+			}
 			outputEvents(parser, startDatetime, stopDatetime, eventFilter, headerOnly);
 			
 		} else {
@@ -207,7 +226,14 @@ public class BinlogParserApp {
 					builder.withEventFilter(eventFilter);
 				}
 			}
+			if (useIndex && startPos > 0) {
+				builder.withIndex(BinlogFileIndex.getIndex(logFile, order));
+			}
 			BinlogParser parser = builder.build();
+			if (startPos > 0) {
+				// 跳到第一个偏移大于等于--start-position的事件, 之前的TABLE_MAP_EVENT会被读取;
+				parser.seek(startPos);
+			}
 			outputEvents(parser, startPos, stopPos, eventFilter, headerOnly);
 		}
 	}
@@ -230,8 +256,9 @@ public class BinlogParserApp {
 						+ ") must less than stop-gtid's transaction-id(" + stopTid + ").");
 		}
 		boolean startFlag = false;
+		BinlogEvent event = new BinlogEvent(); // reused by each event.
 		while (parser.hasEvent()) {
-			BinlogEvent event = parser.nextEvent();
+			parser.nextEvent(event);
 			EventHeader header = event.getHeader();
 			EventType et = header.getEventType();
 			
@@ -269,10 +296,11 @@ public class BinlogParserApp {
 				throw new MissingOptionException("--start-datetime(" + sf.format(new Date(startDatetime))
 						+ ") must less than --stop-datetime(" + sf.format(new Date(stopDatetime)) + ").");
 		}
+		BinlogEvent event = new BinlogEvent(); // reused by each event.
 		while (parser.hasEvent()) {
-			BinlogEvent event = parser.nextEvent();
+			parser.nextEvent(event);
 			EventHeader header = event.getHeader();
-			long eventDatetime = header.getTimestamp().getTime();
+			long eventDatetime = header.getTimestampMillis();
 			if (eventDatetime >= startDatetime) {
 				if (stopDatetime > 0 & eventDatetime > stopDatetime) {
 					break;
@@ -280,6 +308,7 @@ public class BinlogParserApp {
 				output(event, eventFilter, headerOnly);
 			}
 		}
+		parser.close();
 	}
 	
 	private static void outputEvents(BinlogParser parser, int startPos, int stopPos,
@@ -291,8 +320,9 @@ public class BinlogParserApp {
 						"--start-position(" + startPos + ") must less than --stop-position(" + stopPos + ").");
 		}
 		
+		BinlogEvent event = new BinlogEvent(); // reused by each event.
 		while (parser.hasEvent()) {
-			BinlogEvent event = parser.nextEvent();
+			parser.nextEvent(event);
 			EventHeader header = event.getHeader();
 			long sPos = header.getStartPosition();
 			long ePos = header.getNextPosition();
@@ -340,6 +370,7 @@ public class BinlogParserApp {
 	    options.addOption(Option.builder().longOpt(DISABLE_EVENT_BODY_DECODE).desc("Disable decode event body contents, return event body Hex value only.").build());
 	    options.addOption(Option.builder("t").longOpt(EVENTS_OPTION_NAME).hasArg().argName("events").desc("Output only this comma-sparated list of binlog events.").build());
 	    options.addOption(Option.builder().longOpt(EVENT_HEADER_ONLY).desc("Output common event header only.").build());
+	    options.addOption(Option.builder().longOpt(USE_INDEX_OPTION_NAME).desc("Seek to --start-position, --start-datetime or --start-gtid with the index file (log-file.idx), the index file is built if it's missing or out of date.").build());
 	    return options;
 	}
 	
@@ -41,6 +41,21 @@ public class BinlogEvent {
 		this.body = body;
 	}
 	
+	/**
+	 * An empty event to be reused by BinlogParser.nextEvent(BinlogEvent).
+	 */
+	public BinlogEvent() {
+		this(null, null);
+	}
+	
+	public void setHeader(EventHeader header) {
+		this.header = header;
+	}
+	
+	public void setBody(EventBody body) {
+		this.body = body;
+	}
+	
 	public EventHeader getHeader() {
 		return header;
 	}
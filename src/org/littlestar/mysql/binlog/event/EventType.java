@@ -138,6 +138,21 @@ public enum EventType {
 		return UNKNOWN_EVENT;
 	}
 	
+	public boolean isRowsEvent() {
+		switch (this) {
+		case WRITE_ROWS_EVENT_V1:
+		case UPDATE_ROWS_EVENT_V1:
+		case DELETE_ROWS_EVENT_V1:
+		case WRITE_ROWS_EVENT:
+		case UPDATE_ROWS_EVENT:
+		case DELETE_ROWS_EVENT:
+		case PARTIAL_UPDATE_ROWS_EVENT:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
 	public boolean isEqual(final String type) {
 		return name().equalsIgnoreCase(type);
 	}
@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.EventType;
 import org.littlestar.mysql.binlog.event.body.EventBody;
 import org.littlestar.mysql.binlog.event.body.impl.BeginLoadQueryEvent;
@@ -38,6 +40,11 @@ import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 public class EventBodyFactory {
 	public static EventBody createEventBody(final byte[] bodyData, final EventHeader eventHeader,
 			final BinlogFileMeta binlogFileMeta, boolean isDecode) {
+		return createEventBody(ByteBuffer.wrap(bodyData).asReadOnlyBuffer(), eventHeader, binlogFileMeta, isDecode);
+	}
+	
+	public static EventBody createEventBody(final ByteBuffer bodyData, final EventHeader eventHeader,
+			final BinlogFileMeta binlogFileMeta, boolean isDecode) {
 		if (!isDecode) {
 			return new EventBodyDefaultImpl(bodyData, eventHeader, binlogFileMeta);
 		}
@@ -57,7 +64,7 @@ public class EventBodyFactory {
 			eventBody = new XidEventBody(bodyData, eventHeader, binlogFileMeta);
 			break;
 		case TABLE_MAP_EVENT:
-			eventBody = new TableMapEventBody(bodyData, eventHeader, binlogFileMeta);
+			eventBody = TableMapEventBody.getTableMapEventBody(bodyData, eventHeader, binlogFileMeta);
 			break;
 		case WRITE_ROWS_EVENT_V1:
 		case UPDATE_ROWS_EVENT_V1:
@@ -1,9 +1,13 @@
 package org.littlestar.mysql.binlog.event.body.helper;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 
 public class Collations {
 	static final HashMap<Integer, Collation> collations = new HashMap<Integer, Collation>();
+	// java charset of collation, index by collation id, null if binary or not supported.
+	static final Charset[] charsets;
 	static {
 		Collation collation;
 		collation = new Collation(1, "big5_chinese_ci", "big5", 1);
@@ -762,10 +766,80 @@ public class Collations {
 		collation = new Collation(309, "utf8mb4_0900_bin", "utf8mb4", 1);
 		collations.put(collation.getId(), collation);
 
+		int maxId = 0;
+		for (int id : collations.keySet()) {
+			maxId = Math.max(maxId, id);
+		}
+		charsets = new Charset[maxId + 1];
+		for (Collation c : collations.values()) {
+			charsets[c.getId()] = getJavaCharset(c.getCharacterSetName());
+		}
 	}
 	
 	public static Collation getCollation(int id) {
 		return collations.get(id);
 	}
+	
+	/**
+	 * @return the java charset of the collation, or null if the collation is unknown, binary or 
+	 *         its character set not supported by the JVM.
+	 */
+	public static Charset getCharset(int collationId) {
+		if (collationId <= 0 || collationId >= charsets.length) {
+			return null;
+		}
+		return charsets[collationId];
+	}
+	
+	/**
+	 * Map a MySQL character set name to java charset.
+	 * @return the java charset, or null if binary or not supported by the JVM.
+	 */
+	public static Charset getJavaCharset(String mysqlCharsetName) {
+		String javaName;
+		switch (mysqlCharsetName.trim().toLowerCase()) {
+		case "utf8": case "utf8mb3": case "utf8mb4":
+			return StandardCharsets.UTF_8;
+		case "ascii":    return StandardCharsets.US_ASCII;
+		case "latin1":   javaName = "windows-1252"; break; // MySQL latin1 is cp1252.
+		case "latin2":   javaName = "ISO-8859-2"; break;
+		case "latin5":   javaName = "ISO-8859-9"; break;
+		case "latin7":   javaName = "ISO-8859-13"; break;
+		case "greek":    javaName = "ISO-8859-7"; break;
+		case "hebrew":   javaName = "ISO-8859-8"; break;
+		case "cp850":    javaName = "IBM850"; break;
+		case "cp852":    javaName = "IBM852"; break;
+		case "cp866":    javaName = "IBM866"; break;
+		case "cp1250":   javaName = "windows-1250"; break;
+		case "cp1251":   javaName = "windows-1251"; break;
+		case "cp1256":   javaName = "windows-1256"; break;
+		case "cp1257":   javaName = "windows-1257"; break;
+		case "cp932":    javaName = "windows-31j"; break;
+		case "koi8r":    javaName = "KOI8-R"; break;
+		case "koi8u":    javaName = "KOI8-U"; break;
+		case "macce":    javaName = "x-MacCentralEurope"; break;
+		case "macroman": javaName = "x-MacRoman"; break;
+		case "big5":     javaName = "Big5"; break;
+		case "gb2312":   javaName = "GB2312"; break;
+		case "gbk":      javaName = "GBK"; break;
+		case "gb18030":  javaName = "GB18030"; break;
+		case "sjis":     javaName = "Shift_JIS"; break;
+		case "ujis":     javaName = "EUC-JP"; break;
+		case "eucjpms":  javaName = "x-eucJP-Open"; break;
+		case "euckr":    javaName = "EUC-KR"; break;
+		case "tis620":   javaName = "TIS-620"; break;
+		case "ucs2":     return StandardCharsets.UTF_16BE;
+		case "utf16":    return StandardCharsets.UTF_16BE;
+		case "utf16le":  return StandardCharsets.UTF_16LE;
+		case "utf32":    javaName = "UTF-32BE"; break;
+		case "binary":   return null;
+		default:         javaName = mysqlCharsetName.trim(); // armscii8, dec8, hp8, ...
+		}
+		try {
+			return Charset.forName(javaName);
+		} catch (Exception e) {
+			return null;
+		}
+	}
 
 }
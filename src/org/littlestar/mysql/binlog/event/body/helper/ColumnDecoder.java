@@ -0,0 +1,342 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.event.body.helper;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * Decoder of a column value in row-images, the column type and meta are parsed when the decoder is 
+ * compiled (once per table map), see RowDecoderPlan.
+ * 
+ * How to decode each column type, please reference log_event_print_value(...) in log_event.cc.
+ */
+public abstract class ColumnDecoder {
+	protected final ByteOrder order;
+	
+	protected ColumnDecoder(ByteOrder order) {
+		this.order = order;
+	}
+	
+	/**
+	 * Decode the column value start at pos of the row data, set the value to the column of row-image. 
+	 * @return the end position of column value.
+	 */
+	public abstract int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col);
+	
+	/**
+	 * Skip the column value start at pos of the row data without decoding it.
+	 * @return the end position of column value.
+	 */
+	public abstract int skip(final ByteBuffer data, final int pos);
+	
+	/**
+	 * @param charset the charset to decode string value, null if not decode (raw bytes).
+	 */
+	public static ColumnDecoder compile(final ColumnDefine colDef, final ByteOrder order, final Charset charset) {
+		int cType = ParserHelper.getUnsignedInteger(colDef.getColumnType());
+		byte[] rawMeta = colDef.getColumnMeta();
+		boolean unsigned = colDef.getIsUnsigned(); // from SIGNEDNESS, signed if table map has no it.
+		switch (cType) {
+		//---- Fixed Length Columns -----
+		case 0x01:   // TINY  --> 1 byte
+			return new IntegerDecoder(order, 1, unsigned);
+		case 0x02:   // SHORT --> 2 bytes
+			return new IntegerDecoder(order, 2, unsigned);
+		case 0x03:   // LONG  --> 4 bytes
+			return new IntegerDecoder(order, 4, unsigned);
+		case 0x04:   // FLOAT:  4 bytes, IEEE 754 single precision format 
+			return new FloatDecoder(order);
+		case 0x05:   // DOUBLE: 8 bytes, IEEE 754 double precision format 
+			return new DoubleDecoder(order);
+		case 0x06:   // NULL
+		case 0x08:   // LONGLONG: 8 bytes
+			return new LongDecoder(order, unsigned);
+		case 0x09:   // INT24   : 3 bytes
+			return new IntegerDecoder(order, 3, unsigned);
+		case 0xfe: case 0xf7: case 0xf8:// ProtocolBinary::MYSQL_TYPE_STRING;  
+			/* 
+			 * This enumeration value is only used internally and cannot exist in a binlog.
+			 *   0xf7: // ProtocolBinary::MYSQL_TYPE_ENUM; 
+			 *   0xf8: // ProtocolBinary::MYSQL_TYPE_SET; 
+			 * char, enum and set column type are real storage in ProtocolBinary::MYSQL_TYPE_STRING(0xfe),
+			 * the real type is in the first byte of meta (see ColumnDefine.getRealColumnType()).
+			 * The column define is shared by the reused table maps, so it's not changed here.
+			*/
+			int meta0 = ParserHelper.getUnsignedInteger(rawMeta[0]); //real type
+			int meta1 = ParserHelper.getUnsignedInteger(rawMeta[1]); //define length
+			if (meta0 == 0xf7 | meta0 == 0xf8) {// ProtocolBinary::MYSQL_TYPE_ENUM; // ProtocolBinary::MYSQL_TYPE_SET;
+				return new EnumDecoder(order, meta1);
+			}
+			if ((meta0 & 0x30) != 0x30) {
+				meta1 = meta1 | (((meta0 & 0x30) ^ 0x30) << 4);
+			}
+			return new StringDecoder(order, meta1 < 256 ? 1 : 2, charset);
+		case 0x0f: // ProtocolBinary::MYSQL_TYPE_VARCHAR; 
+		case 0xfd: // ProtocolBinary::MYSQL_TYPE_VAR_STRING; 
+			int varcharMetaValue = ParserHelper.getUnsignedInteger(rawMeta, order);
+			return new StringDecoder(order, varcharMetaValue < 256 ? 1 : 2, charset);
+		case 0x00: // ProtocolBinary::MYSQL_TYPE_DECIMAL; 
+		case 0xf6: // ProtocolBinary::MYSQL_TYPE_NEWDECIMAL;
+			// meta: precision(1 byte) + scale(1 byte)
+			int decimalMetaValue = ParserHelper.getUnsignedInteger(rawMeta, order);
+			return new DecimalDecoder(order, decimalMetaValue & 0xFF, decimalMetaValue >> 8);
+		/*
+		日期类型：
+		https://dev.mysql.com/doc/internals/en/date-and-time-data-type-representation.html	
+		简单来说MySQL 5.6.4引入了新的日期时间类型， TIME2, TIMESTAMP2, and DATETIME2, 在新类型中
+		引入了"fractional seconds part". "fractional seconds part"长度是根据这些类型的定义决定的
+		比如col1 timestamp(3); 所以这些类型是可变长的，比秒更小的部分的存储长度根据这些列的meta-def来决定。
+		*/
+		case 0x0d: // YEAR: 1 byte, little endian
+			return new YearDecoder(order);
+		case 0x0e:  // NEWDATE
+		case 0x0a:  // DATE: 3 bytes
+		case 0x0b:  // TIME: 3 bytes
+		case 0x0c:  // DATETIME: 8 bytes
+		case 0x07:  // TIMESTAMP: 4 bytes
+			return TemporalDecoder.newDecoder(cType, order, 0);
+		case 0x11:  // TIMESTAMP2: 4 bytes + fractional-seconds storage
+		case 0x12:  // DATETIME2: 5 bytes + fractional-seconds storage
+		case 0x13:  // TIME2: 3 bytes + fractional-seconds storage
+			return TemporalDecoder.newDecoder(cType, order, ParserHelper.getUnsignedInteger(rawMeta, order));
+		case 0xfc: // ProtocolBinary::MYSQL_TYPE_BLOB; 
+			/*
+			  0xf9: // ProtocolBinary::MYSQL_TYPE_TINY_BLOB; 
+			  0xfa: // ProtocolBinary::MYSQL_TYPE_MEDIUM_BLOB; 
+			  0xfb: // ProtocolBinary::MYSQL_TYPE_LONG_BLOB; 
+			对应的都是0xfc： MYSQL_TYPE_BLOB, meta is the bytes of blob length: 
+			  1: "TINYBLOB/TINYTEXT", 2: "BLOB/TEXT", 3: "MEDIUMBLOB/MEDIUMTEXT", 4: "LONGBLOB/LONGTEXT"
+			*/
+			return new StringDecoder(order, ParserHelper.getUnsignedInteger(rawMeta, order), charset);
+		case 0x10: // ProtocolBinary::MYSQL_TYPE_BIT;
+			/* Meta-data: bit_len, bytes_in_rec, 2 bytes */
+			int bitMeta = ParserHelper.getUnsignedInteger(rawMeta, order);
+			int nbits = ((bitMeta >> 8) * 8) + (bitMeta & 0xFF);
+			return new BytesDecoder(order, (nbits + 7) / 8);
+		case 0xff: // ProtocolBinary::MYSQL_TYPE_GEOMETRY;
+			return new StringDecoder(order, ParserHelper.getUnsignedInteger(rawMeta, order), null);
+		default: // not supported, value is null.
+			return new UnsupportedDecoder(order);
+		}
+	}
+	
+	/**
+	 * TINY, SHORT, INT24 and LONG: signed value is sign extended from length bytes, unsigned LONG 
+	 * value is set as long since it may not fit in int.
+	 */
+	static final class IntegerDecoder extends ColumnDecoder {
+		private final int length;
+		private final boolean unsigned;
+		
+		IntegerDecoder(ByteOrder order, int length, boolean unsigned) {
+			super(order);
+			this.length = length;
+			this.unsigned = unsigned;
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			if (!unsigned) {
+				rowImage.setInt(col, ParserHelper.getInteger(data, pos, length, order));
+			} else if (length < 4) {
+				rowImage.setInt(col, ParserHelper.getUnsignedInteger(data, pos, length, order));
+			} else {
+				rowImage.setLong(col, ParserHelper.getUnsignedLong(data, pos, length, order));
+			}
+			return pos + length;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + length;
+		}
+	}
+	
+	/**
+	 * LONGLONG: unsigned value above Long.MAX_VALUE is set as BigInteger.
+	 */
+	static final class LongDecoder extends ColumnDecoder {
+		private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+		private final boolean unsigned;
+		
+		LongDecoder(ByteOrder order, boolean unsigned) {
+			super(order);
+			this.unsigned = unsigned;
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			long value = ParserHelper.getLong(data, pos, 8, order);
+			if (unsigned && value < 0) {
+				rowImage.setObject(col, BigInteger.valueOf(value).add(TWO_64));
+			} else {
+				rowImage.setLong(col, value);
+			}
+			return pos + 8;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + 8;
+		}
+	}
+	
+	static final class FloatDecoder extends ColumnDecoder {
+		FloatDecoder(ByteOrder order) {
+			super(order);
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			rowImage.setFloat(col, ParserHelper.getFloat(data, pos, order));
+			return pos + 4;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + 4;
+		}
+	}
+	
+	static final class DoubleDecoder extends ColumnDecoder {
+		DoubleDecoder(ByteOrder order) {
+			super(order);
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			rowImage.setDouble(col, ParserHelper.getDouble(data, pos, order));
+			return pos + 8;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + 8;
+		}
+	}
+	
+	/**
+	 * ENUM/SET: the index (ENUM) or bits (SET) value.
+	 */
+	static final class EnumDecoder extends ColumnDecoder {
+		private final int length;
+		
+		EnumDecoder(ByteOrder order, int length) {
+			super(order);
+			this.length = length;
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			rowImage.setInt(col, ParserHelper.getUnsignedInteger(data, pos, length, order));
+			return pos + length;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + length;
+		}
+	}
+	
+	/**
+	 * Length prefixed value: CHAR, VARCHAR, BLOB/TEXT and GEOMETRY. The value is kept as byte range 
+	 * of data, and decoded with charset (or copied as bytes) when it's used.
+	 */
+	static final class StringDecoder extends ColumnDecoder {
+		private final int lengthBytes;
+		private final Charset charset;
+		
+		StringDecoder(ByteOrder order, int lengthBytes, Charset charset) {
+			super(order);
+			this.lengthBytes = lengthBytes;
+			this.charset = charset;
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			int start = pos + lengthBytes;
+			int length = ParserHelper.getUnsignedInteger(data, pos, lengthBytes, order);
+			rowImage.setString(col, data, start, length, charset);
+			return start + length;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + lengthBytes + ParserHelper.getUnsignedInteger(data, pos, lengthBytes, order);
+		}
+	}
+	
+	static final class BytesDecoder extends ColumnDecoder {
+		private final int length;
+		
+		BytesDecoder(ByteOrder order, int length) {
+			super(order);
+			this.length = length;
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			rowImage.setObject(col, ParserHelper.getBytes(data, pos, pos + length));
+			return pos + length;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + length;
+		}
+	}
+	
+	static final class YearDecoder extends ColumnDecoder {
+		YearDecoder(ByteOrder order) {
+			super(order);
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			int yearValue = ParserHelper.getUnsignedInteger(data, pos, 1, ByteOrder.LITTLE_ENDIAN);
+			rowImage.setInt(col, yearValue + 1900);
+			return pos + 1;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos + 1;
+		}
+	}
+	
+	static final class UnsupportedDecoder extends ColumnDecoder {
+		UnsupportedDecoder(ByteOrder order) {
+			super(order);
+		}
+		
+		@Override
+		public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+			rowImage.setNull(col);
+			return pos;
+		}
+		
+		@Override
+		public int skip(final ByteBuffer data, final int pos) {
+			return pos;
+		}
+	}
+}
@@ -24,7 +24,9 @@ public class ColumnDefine {
 	private byte columnType;
 	private byte[] columnMeta;
 	private boolean isNullableColumn;
+	private boolean isUnsignedColumn;
 	private String charsetName ;
+	private int collationId;
 	
 	public void setColumnId(int columnId) {
 		this.columnId = columnId;
@@ -66,6 +68,20 @@ public class ColumnDefine {
 		return isNullableColumn;
 	}
 	
+	/**
+	 * @param isUnsignedColumn the unsigned flag of numeric column from table map's optional metadata.
+	 */
+	public void setIsUnsigned(boolean isUnsignedColumn) {
+		this.isUnsignedColumn = isUnsignedColumn;
+	}
+	
+	/**
+	 * @return true if numeric column is unsigned, false if signed or unknown.
+	 */
+	public boolean getIsUnsigned() {
+		return isUnsignedColumn;
+	}
+	
 	public void setCharsetName(String charsetName) {
 		this.charsetName = charsetName;
 	}
@@ -74,8 +90,78 @@ public class ColumnDefine {
 		return charsetName;
 	}
 	
-	public boolean isNumberType() {
+	/**
+	 * @param collationId the collation id of character column from table map's optional metadata.
+	 */
+	public void setCollationId(int collationId) {
+		this.collationId = collationId;
+	}
+	
+	/**
+	 * @return the collation id of character column, 0 if unknown.
+	 */
+	public int getCollationId() {
+		return collationId;
+	}
+	
+	/**
+	 * Character columns(char, varchar, text/blob and geometry) are which the DEFAULT_CHARSET and 
+	 * COLUMN_CHARSET optional metadata refer to. ENUM and SET are not character columns.
+	 */
+	public boolean isCharacterType() {
+		int type = getRealColumnType();
+		switch (type) {
+		case 0x0f: // VARCHAR
+		case 0xfd: // VAR_STRING
+		case 0xfc: // BLOB
+		case 0xff: // GEOMETRY
+			return true;
+		case 0xfe: // STRING(CHAR)
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * Numeric columns are which the SIGNEDNESS optional metadata refers to, see is_numeric_type(...)
+	 * in rows_event.cpp. DECIMAL, ENUM and SET are not numeric columns here.
+	 */
+	public boolean isSignednessType() {
+		int type = getRealColumnType();
+		switch (type) {
+		case 0x01: // TINY
+		case 0x02: // SHORT
+		case 0x03: // LONG
+		case 0x04: // FLOAT
+		case 0x05: // DOUBLE
+		case 0x08: // LONGLONG
+		case 0x09: // INT24
+		case 0xf6: // NEWDECIMAL
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * CHAR, ENUM and SET columns are logged as STRING(0xfe), and the real type is in the first byte 
+	 * of meta.
+	 * @return the real type of column.
+	 */
+	public int getRealColumnType() {
 		int type = ParserHelper.getUnsignedInteger(getColumnType());
+		if (type == 0xfe && columnMeta != null && columnMeta.length > 0) {
+			int meta0 = ParserHelper.getUnsignedInteger(columnMeta[0]);
+			if (meta0 == 0xf7 || meta0 == 0xf8) // ENUM, SET
+				return meta0;
+			return meta0 | 0x30; // CHAR, the length may use the 0x30 bits of meta0.
+		}
+		return type;
+	}
+	
+	public boolean isNumberType() {
+		int type = getRealColumnType();
 		switch (type) {
 		case 0x00: // DECIMAL
 		case 0x01: // TINY
@@ -95,7 +181,7 @@ public class ColumnDefine {
 	}
 	
 	public boolean isStringType() {
-		int type = ParserHelper.getUnsignedInteger(getColumnType());
+		int type = getRealColumnType();
 		switch (type) {
 		case 0x0f: // VARCHAR
 		case 0xfd: // VAR_STRING
@@ -107,7 +193,7 @@ public class ColumnDefine {
 	}
 	
 	public boolean isDatetimeType() {
-		int type = ParserHelper.getUnsignedInteger(getColumnType());
+		int type = getRealColumnType();
 		switch (type) {
 		case 0x07: // TIMESTAMP
 		case 0x0a: // DATE
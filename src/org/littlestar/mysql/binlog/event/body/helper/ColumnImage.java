@@ -16,12 +16,23 @@
 
 package org.littlestar.mysql.binlog.event.body.helper;
 
+/**
+ * A column value of row-image. The ColumnImage of RowImage.getColumnImage(int) is a view of 
+ * the row-image's column slot, setColumnValue() updates the row-image.
+ */
 public class ColumnImage {
-	private int columnId;
+	private final int columnId;
+	private final RowImage rowImage;
 	private Object value;
 	
 	public ColumnImage(int id) {
 		columnId = id;
+		rowImage = null;
+	}
+	
+	ColumnImage(RowImage rowImage, int id) {
+		columnId = id;
+		this.rowImage = rowImage;
 	}
 	
 	public int getColumnId() {
@@ -29,18 +40,24 @@ public class ColumnImage {
 	}
 	
 	public void setColumnValue(Object value) {
-		this.value = value;
+		if (rowImage != null) {
+			rowImage.setColumnValue(columnId, value);
+		} else {
+			this.value = value;
+		}
 	}
 	
 	public boolean isNullValue() {
-		if (value == null) {
-			return true;
-		} else {
-			return false;
+		if (rowImage != null) {
+			return rowImage.isNull(columnId);
 		}
+		return value == null;
 	}
 	
 	public Object getColumnValue() {
+		if (rowImage != null) {
+			return rowImage.getColumnValue(columnId);
+		}
 		return value;
 	}
 	
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.event.body.helper;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * DECIMAL(precision, scale) decoder, the binary format please reference decimal2bin() in decimal.c:
+ * 
+ *  1. The integer and fraction parts are stored separately, every 9 digits are stored in 4 bytes, 
+ *     the leftover digits are stored in the fewest bytes (DIG2BYTES), e.g. DECIMAL(20,6): 14 integer 
+ *     digits = 3 bytes (5 digits) + 4 bytes (9 digits), 6 fraction digits = 3 bytes. 
+ *  2. The bytes are big-endian, the highest bit of first byte is flipped, and all bytes are inverted 
+ *     if the number is negative.
+ * 
+ * When precision &lt;= 18, the value is accumulated into an unscaled long, otherwise the digits are 
+ * written into a char[], then the BigDecimal is built in a single step.
+ */
+public class DecimalDecoder extends ColumnDecoder {
+	private static final int DIGITS_PER_4BYTES = 9; // 4 bytes store 9 digits;
+	private static final int[] DIG2BYTES = { 0, 1, 1, 2, 2, 3, 3, 4, 4, 4 };
+	private static final int[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000,
+			1000000000 };
+	private static final int MAX_LONG_PRECISION = 18;
+	
+	private final int precision;
+	private final int scale;
+	private final int integerFullGroups;
+	private final int integerLeftoverDigits;
+	private final int fractionFullGroups;
+	private final int fractionLeftoverDigits;
+	private final int length;
+	
+	public DecimalDecoder(ByteOrder order, int precision, int scale) {
+		super(order);
+		this.precision = precision;
+		this.scale = scale;
+		int integerDigits = precision - scale;
+		integerFullGroups = integerDigits / DIGITS_PER_4BYTES;
+		integerLeftoverDigits = integerDigits % DIGITS_PER_4BYTES;
+		fractionFullGroups = scale / DIGITS_PER_4BYTES;
+		fractionLeftoverDigits = scale % DIGITS_PER_4BYTES;
+		length = integerFullGroups * 4 + DIG2BYTES[integerLeftoverDigits] 
+				+ fractionFullGroups * 4 + DIG2BYTES[fractionLeftoverDigits];
+	}
+	
+	/**
+	 * @return the storage bytes of the decimal value.
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	@Override
+	public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+		rowImage.setObject(col, decode(data, pos));
+		return pos + length;
+	}
+	
+	@Override
+	public int skip(final ByteBuffer data, final int pos) {
+		return pos + length;
+	}
+	
+	public BigDecimal decode(final ByteBuffer data, final int pos) {
+		// the sign bit: 1 = non-negative, 0 = negative; negative number's bytes are inverted.
+		final int mask = (data.get(pos) & 0x80) != 0 ? 0 : 0xFF;
+		final boolean negative = mask != 0;
+		if (precision <= MAX_LONG_PRECISION) {
+			long unscaled = 0L;
+			int p = pos;
+			int bytes = DIG2BYTES[integerLeftoverDigits];
+			if (bytes > 0) {
+				unscaled = readGroup(data, p, bytes, mask, pos);
+				p += bytes;
+			}
+			for (int i = 0; i < integerFullGroups; i++, p += 4) {
+				unscaled = unscaled * 1000000000L + readGroup(data, p, 4, mask, pos);
+			}
+			for (int i = 0; i < fractionFullGroups; i++, p += 4) {
+				unscaled = unscaled * 1000000000L + readGroup(data, p, 4, mask, pos);
+			}
+			bytes = DIG2BYTES[fractionLeftoverDigits];
+			if (bytes > 0) {
+				unscaled = unscaled * POWERS_OF_TEN[fractionLeftoverDigits] + readGroup(data, p, bytes, mask, pos);
+			}
+			return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+		}
+		// sign + integer digits (at least "0") + '.' + fraction digits.
+		char[] digits = new char[precision + 3];
+		int n = 0;
+		if (negative) {
+			digits[n++] = '-';
+		}
+		int p = pos;
+		boolean leadingZero = true;
+		int bytes = DIG2BYTES[integerLeftoverDigits];
+		if (bytes > 0) {
+			int group = readGroup(data, p, bytes, mask, pos);
+			p += bytes;
+			if (group != 0) {
+				n = putDigits(digits, n, group, integerLeftoverDigits, true);
+				leadingZero = false;
+			}
+		}
+		for (int i = 0; i < integerFullGroups; i++, p += 4) {
+			int group = readGroup(data, p, 4, mask, pos);
+			if (leadingZero && group == 0)
+				continue;
+			n = putDigits(digits, n, group, DIGITS_PER_4BYTES, leadingZero);
+			leadingZero = false;
+		}
+		if (leadingZero) {
+			digits[n++] = '0';
+		}
+		if (scale > 0) {
+			digits[n++] = '.';
+			for (int i = 0; i < fractionFullGroups; i++, p += 4) {
+				n = putDigits(digits, n, readGroup(data, p, 4, mask, pos), DIGITS_PER_4BYTES, false);
+			}
+			bytes = DIG2BYTES[fractionLeftoverDigits];
+			if (bytes > 0) {
+				n = putDigits(digits, n, readGroup(data, p, bytes, mask, pos), fractionLeftoverDigits, false);
+			}
+		}
+		return new BigDecimal(digits, 0, n);
+	}
+	
+	/**
+	 * Read a big-endian group of 1 to 4 bytes, the sign bit of the first byte of value is flipped.
+	 */
+	private static int readGroup(final ByteBuffer data, final int p, final int bytes, final int mask, final int start) {
+		int value = 0;
+		for (int i = 0; i < bytes; i++) {
+			int b = (data.get(p + i) ^ mask) & 0xFF;
+			if (p + i == start) {
+				b ^= 0x80;
+			}
+			value = (value << 8) | b;
+		}
+		return value;
+	}
+	
+	/**
+	 * Put the value's decimal digits with fixed width (zero padded), or without leading zeros when trim.
+	 */
+	private static int putDigits(final char[] digits, int n, int value, final int width, final boolean trim) {
+		int count = width;
+		if (trim) {
+			count = 1;
+			while (count < width && value >= POWERS_OF_TEN[count]) {
+				count++;
+			}
+		}
+		for (int i = n + count - 1; i >= n; i--) {
+			digits[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return n + count;
+	}
+}
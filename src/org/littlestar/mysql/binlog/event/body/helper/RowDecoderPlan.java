@@ -0,0 +1,124 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.event.body.helper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * The decoder plan of a table's row-images, compiled once per table map: an array of column decoders 
+ * with pre-parsed column meta and charset (resolved from collation of table map if present). The 
+ * plan is cached in BinlogFileMeta, and reused by the rows events of the table until the table map
+ * is replaced.
+ */
+public class RowDecoderPlan {
+	private final TableDefine tableDefine;
+	private final ColumnDecoder[] decoders;
+	
+	private RowDecoderPlan(TableDefine tableDefine, ColumnDecoder[] decoders) {
+		this.tableDefine = tableDefine;
+		this.decoders = decoders;
+	}
+	
+	/**
+	 * @param order the byte order of binlog file.
+	 * @param decodeString decode string value with charset of column, or keep raw bytes.
+	 * @param defaultCharsetName charset of string columns which don't have charset.
+	 */
+	public static RowDecoderPlan compile(final TableDefine tableDefine, final ByteOrder order,
+			final boolean decodeString, final String defaultCharsetName) {
+		final int columnCount = tableDefine.getColumnCount();
+		ColumnDecoder[] decoders = new ColumnDecoder[columnCount];
+		for (int col = 0; col < columnCount; col++) {
+			ColumnDefine colDef = tableDefine.getColumnDefine(col);
+			Charset charset = null;
+			if (decodeString) {
+				// charset of column's collation in table map, or charset name, or default charset.
+				charset = Collations.getCharset(colDef.getCollationId());
+				if (charset == null) {
+					String charsetName = defaultCharsetName;
+					if (colDef.getCharsetName() != null)
+						charsetName = colDef.getCharsetName();
+					charset = ParserHelper.getCharset(charsetName);
+				}
+			}
+			decoders[col] = ColumnDecoder.compile(colDef, order, charset);
+		}
+		return new RowDecoderPlan(tableDefine, decoders);
+	}
+	
+	public TableDefine getTableDefine() {
+		return tableDefine;
+	}
+	
+	public int getColumnCount() {
+		return decoders.length;
+	}
+	
+	public ColumnDecoder getColumnDecoder(int columnId) {
+		return decoders[columnId];
+	}
+	
+	/**
+	 * Decode the column values of a row-image start at pos (after null-bitmap).
+	 * @param presentBitSet the columns present in the row-image, index by column id.
+	 * @param nullBitSet the null-bitmap, index by the order of present columns.
+	 * @return the end position of the row-image.
+	 */
+	public int decode(final ByteBuffer data, final int pos, final BitSet presentBitSet, final BitSet nullBitSet,
+			final RowImage rowImage) {
+		int next = pos;
+		for (int col = 0, index = 0; col < decoders.length; col++) {
+			if (!presentBitSet.get(col)) {
+				rowImage.setAbsent(col);
+			} else if (nullBitSet.get(index++)) { // skip null column
+				rowImage.setNull(col);
+			} else {
+				next = decoders[col].decode(data, next, rowImage, col);
+			}
+		}
+		return next;
+	}
+	
+	/**
+	 * Scan the column positions of a row-image start at pos (after null-bitmap) without decoding
+	 * the values, the columns are decoded when they are first used.
+	 * @return the end position of the row-image.
+	 */
+	public int scan(final ByteBuffer data, final int pos, final BitSet presentBitSet, final BitSet nullBitSet,
+			final RowImage rowImage) {
+		final int[] offsets = new int[decoders.length + 1];
+		int next = pos;
+		for (int col = 0, index = 0; col < decoders.length; col++) {
+			offsets[col] = next;
+			if (!presentBitSet.get(col)) {
+				rowImage.setAbsent(col);
+			} else if (nullBitSet.get(index++)) {
+				rowImage.setNull(col);
+			} else {
+				next = decoders[col].skip(data, next);
+			}
+		}
+		offsets[decoders.length] = next;
+		rowImage.setDeferred(this, data, offsets);
+		return next;
+	}
+}
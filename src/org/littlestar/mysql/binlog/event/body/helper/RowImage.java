@@ -16,24 +16,93 @@
 
 package org.littlestar.mysql.binlog.event.body.helper;
 
-import java.util.HashMap;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * A row-image of rows event, the column values are stored in arrays indexed by column id: 
+ * integer and floating-point values in primitive slots, other values (string, decimal, bytes...) 
+ * in object slots, and null values in a null bitmap. String values are kept as byte ranges of 
+ * the rows event body, and decoded only when getColumnValue(int) is called.
+ * 
+ * Columns not present in the row-image (binlog_row_image=MINIMAL or NOBLOB) are null, and 
+ * isPresent(int) returns false.
+ * 
+ * A row-image can also be scanned without decoding (RowDecoderPlan.scan), then each column is 
+ * decoded when it's first used, and columnValueEquals(int, RowImage) compares the raw bytes.
+ * 
+ * getColumnImage(int) returns a ColumnImage view of the column.
+ */
 public class RowImage {
+	public static final byte TYPE_OBJECT = 0;
+	public static final byte TYPE_INT    = 1;
+	public static final byte TYPE_LONG   = 2;
+	public static final byte TYPE_FLOAT  = 3;
+	public static final byte TYPE_DOUBLE = 4;
+	public static final byte TYPE_TEMPORAL = 5; // packed long value of TemporalDecoder
+	public static final byte TYPE_STRING   = 6; // byte range (start << 32 | length) of data
+	
 	private int startPos = -1;
 	private int endPos = -1;
-	private boolean isAllNull = false;
-	private final long tableId ;
-	private final HashMap<Integer, ColumnImage> columnImages;
+	private long tableId ;
+	private int columnCount = 0;
+	private long[] nullBitmap;
+	private long[] absentBitmap = null; // bitmap of columns not present, null if all columns present.
+	private byte[] types;
+	private long[] primitives;
+	private Object[] objects = null;
+	private ByteBuffer data = null; // the buffer which TYPE_STRING values referred to.
+	private RowDecoderPlan plan = null; // decoder plan of deferred columns.
+	private int[] offsets = null; // start position of columns in data, offsets[n] is the end of column n-1.
+	private long[] pending = null; // bitmap of deferred columns which are not decoded yet.
 	
 	public RowImage(long tableId) {
-		columnImages = new HashMap<Integer, ColumnImage>();
+		this(tableId, 0);
+	}
+	
+	public RowImage(long tableId, int columnCount) {
 		this.tableId = tableId;
+		this.columnCount = columnCount;
+		nullBitmap = new long[(columnCount + 63) >>> 6];
+		types = new byte[columnCount];
+		primitives = new long[columnCount];
 	}
 	
 	public long getTableId() {
 		return tableId;
 	}
 	
+	/**
+	 * Clear the row-image to decode another row into it, the arrays are reused if they are big enough.
+	 */
+	public void reset(long tableId, int columnCount) {
+		this.tableId = tableId;
+		startPos = -1;
+		endPos = -1;
+		if (types.length < columnCount) {
+			nullBitmap = new long[(columnCount + 63) >>> 6];
+			types = new byte[columnCount];
+			primitives = new long[columnCount];
+			absentBitmap = null;
+			objects = null;
+		} else {
+			Arrays.fill(nullBitmap, 0L);
+			Arrays.fill(types, TYPE_OBJECT);
+			if (absentBitmap != null)
+				Arrays.fill(absentBitmap, 0L);
+			if (objects != null)
+				Arrays.fill(objects, null);
+		}
+		this.columnCount = columnCount;
+		data = null;
+		plan = null;
+		offsets = null;
+		pending = null;
+	}
+	
 	public void setStartPosition(int pos) {
 		startPos = pos;
 	}
@@ -51,26 +120,310 @@ public class RowImage {
 	}
 	
 	public void setColumnImage(ColumnImage columnData) {
-		columnImages.put(columnData.getColumnId(), columnData);
+		setColumnValue(columnData.getColumnId(), columnData.getColumnValue());
 	}
 	
 	public void setColumnImage(int columnId, ColumnImage columnData) {
-		columnImages.put(columnId, columnData);
+		setColumnValue(columnId, columnData.getColumnValue());
 	}
 	
 	public ColumnImage getColumnImage(int columnId) {
-		return columnImages.get(columnId);
+		if (columnId < 0 || columnId >= columnCount)
+			return null;
+		return new ColumnImage(this, columnId);
 	}
 	
 	public int getColumnCount() {
-		return columnImages.size();
+		return columnCount;
+	}
+	
+	public boolean isNull(int columnId) {
+		return (nullBitmap[columnId >>> 6] & (1L << columnId)) != 0;
+	}
+	
+	/**
+	 * @return false if the column is not logged in the row-image (binlog_row_image=MINIMAL or NOBLOB). 
+	 */
+	public boolean isPresent(int columnId) {
+		return absentBitmap == null || (absentBitmap[columnId >>> 6] & (1L << columnId)) == 0;
+	}
+	
+	/**
+	 * Set the column not present in the row-image, the value is null.
+	 */
+	public void setAbsent(int columnId) {
+		setNull(columnId);
+		if (absentBitmap == null)
+			absentBitmap = new long[nullBitmap.length];
+		absentBitmap[columnId >>> 6] |= (1L << columnId);
+	}
+	
+	public byte getType(int columnId) {
+		decodeIfPending(columnId);
+		return types[columnId];
+	}
+	
+	public void setNull(int columnId) {
+		ensureCapacity(columnId);
+		clearPending(columnId);
+		clearAbsent(columnId);
+		nullBitmap[columnId >>> 6] |= (1L << columnId);
+		types[columnId] = TYPE_OBJECT;
+		if (objects != null)
+			objects[columnId] = null;
+	}
+	
+	public void setInt(int columnId, int value) {
+		setPrimitive(columnId, TYPE_INT, value);
+	}
+	
+	public void setLong(int columnId, long value) {
+		setPrimitive(columnId, TYPE_LONG, value);
+	}
+	
+	public void setFloat(int columnId, float value) {
+		setPrimitive(columnId, TYPE_FLOAT, Float.floatToRawIntBits(value));
+	}
+	
+	public void setDouble(int columnId, double value) {
+		setPrimitive(columnId, TYPE_DOUBLE, Double.doubleToRawLongBits(value));
+	}
+	
+	/**
+	 * Set packed date/time value, it's formatted by the decoder when getColumnValue().
+	 */
+	public void setTemporal(int columnId, long packed, TemporalDecoder decoder) {
+		setPrimitive(columnId, TYPE_TEMPORAL, packed);
+		if (objects == null)
+			objects = new Object[types.length];
+		objects[columnId] = decoder;
+	}
+	
+	/**
+	 * Set string value as the byte range [start, start + length) of data, it's decoded with charset 
+	 * when getColumnValue(), or returned as bytes if charset is null. The data must not be changed
+	 * while the row-image is used.
+	 */
+	public void setString(int columnId, ByteBuffer data, int start, int length, Charset charset) {
+		if (this.data != null && this.data != data) {
+			// values of a row-image are from one buffer, otherwise decode it now.
+			setObject(columnId, decodeString(data, start, length, charset));
+			return;
+		}
+		this.data = data;
+		setPrimitive(columnId, TYPE_STRING, ((long) start << 32) | length);
+		if (charset != null) {
+			if (objects == null)
+				objects = new Object[types.length];
+			objects[columnId] = charset;
+		}
+	}
+	
+	public void setObject(int columnId, Object value) {
+		if (value == null) {
+			setNull(columnId);
+			return;
+		}
+		ensureCapacity(columnId);
+		clearPending(columnId);
+		clearAbsent(columnId);
+		nullBitmap[columnId >>> 6] &= ~(1L << columnId);
+		types[columnId] = TYPE_OBJECT;
+		if (objects == null)
+			objects = new Object[types.length];
+		objects[columnId] = value;
+	}
+	
+	private void setPrimitive(int columnId, byte type, long value) {
+		ensureCapacity(columnId);
+		clearPending(columnId);
+		clearAbsent(columnId);
+		nullBitmap[columnId >>> 6] &= ~(1L << columnId);
+		types[columnId] = type;
+		primitives[columnId] = value;
+		if (objects != null)
+			objects[columnId] = null;
+	}
+	
+	/**
+	 * Set the column value, Integer, Long, Float and Double values are stored in primitive slots.
+	 */
+	public void setColumnValue(int columnId, Object value) {
+		if (value instanceof Integer) {
+			setInt(columnId, (Integer) value);
+		} else if (value instanceof Long) {
+			setLong(columnId, (Long) value);
+		} else if (value instanceof Float) {
+			setFloat(columnId, (Float) value);
+		} else if (value instanceof Double) {
+			setDouble(columnId, (Double) value);
+		} else {
+			setObject(columnId, value);
+		}
+	}
+	
+	public int getInt(int columnId) {
+		return (int) getLong(columnId);
+	}
+	
+	/**
+	 * @return the integer value of INT or LONG column, the packed value of TEMPORAL column, 0 if null.
+	 */
+	public long getLong(int columnId) {
+		decodeIfPending(columnId);
+		return primitives[columnId];
+	}
+	
+	/**
+	 * @return the floating-point value of FLOAT or DOUBLE column, 0 if null.
+	 */
+	public double getDouble(int columnId) {
+		decodeIfPending(columnId);
+		if (types[columnId] == TYPE_FLOAT) {
+			return Float.intBitsToFloat((int) primitives[columnId]);
+		}
+		return Double.longBitsToDouble(primitives[columnId]);
+	}
+	
+	/**
+	 * @return the (boxed) column value, null if the column is null.
+	 */
+	public Object getColumnValue(int columnId) {
+		if (isNull(columnId))
+			return null;
+		decodeIfPending(columnId);
+		long value = primitives[columnId];
+		switch (types[columnId]) {
+		case TYPE_INT:
+			return Integer.valueOf((int) value);
+		case TYPE_LONG:
+			return Long.valueOf(value);
+		case TYPE_FLOAT:
+			return Float.valueOf(Float.intBitsToFloat((int) value));
+		case TYPE_DOUBLE:
+			return Double.valueOf(Double.longBitsToDouble(value));
+		case TYPE_TEMPORAL:
+			return ((TemporalDecoder) objects[columnId]).format(value);
+		case TYPE_STRING:
+			Charset charset = objects == null ? null : (Charset) objects[columnId];
+			return decodeString(data, (int) (value >>> 32), (int) value, charset);
+		default:
+			return getObject(columnId);
+		}
+	}
+	
+	/**
+	 * Compare the column value with the same column of other row-image, string values are compared 
+	 * by raw bytes without decoding.
+	 */
+	public boolean columnValueEquals(int columnId, RowImage other) {
+		boolean isNull = isNull(columnId);
+		if (isNull || other.isNull(columnId)) {
+			return isNull == other.isNull(columnId);
+		}
+		if (isPending(columnId) && other.isPending(columnId) && plan == other.plan) {
+			int start = offsets[columnId];
+			int length = offsets[columnId + 1] - start;
+			int otherStart = other.offsets[columnId];
+			if (length != other.offsets[columnId + 1] - otherStart)
+				return false;
+			return rangeEquals(data, start, other.data, otherStart, length);
+		}
+		decodeIfPending(columnId);
+		other.decodeIfPending(columnId);
+		byte type = types[columnId];
+		if (type == TYPE_STRING && other.types[columnId] == TYPE_STRING
+				&& getObject(columnId) == other.getObject(columnId)) { // same charset
+			long range = primitives[columnId];
+			long otherRange = other.primitives[columnId];
+			int length = (int) range;
+			if (length != (int) otherRange)
+				return false;
+			return rangeEquals(data, (int) (range >>> 32), other.data, (int) (otherRange >>> 32), length);
+		}
+		if (type != TYPE_OBJECT && type != TYPE_STRING && type == other.types[columnId]) {
+			return primitives[columnId] == other.primitives[columnId];
+		}
+		Object value = getColumnValue(columnId);
+		Object otherValue = other.getColumnValue(columnId);
+		if (value instanceof byte[] && otherValue instanceof byte[]) {
+			return Arrays.equals((byte[]) value, (byte[]) otherValue);
+		}
+		return value.equals(otherValue);
+	}
+	
+	/**
+	 * Defer decoding the not null columns, offsets are the start positions of columns in data. 
+	 */
+	void setDeferred(RowDecoderPlan plan, ByteBuffer data, int[] offsets) {
+		this.plan = plan;
+		this.data = data;
+		this.offsets = offsets;
+		int columns = offsets.length - 1;
+		pending = new long[(columns + 63) >>> 6];
+		for (int col = 0; col < columns; col++) {
+			if (!isNull(col))
+				pending[col >>> 6] |= (1L << col);
+		}
+	}
+	
+	private boolean isPending(int columnId) {
+		return pending != null && (columnId >>> 6) < pending.length
+				&& (pending[columnId >>> 6] & (1L << columnId)) != 0;
+	}
+	
+	private void clearPending(int columnId) {
+		if (pending != null && (columnId >>> 6) < pending.length)
+			pending[columnId >>> 6] &= ~(1L << columnId);
+	}
+	
+	private void clearAbsent(int columnId) {
+		if (absentBitmap != null)
+			absentBitmap[columnId >>> 6] &= ~(1L << columnId);
+	}
+	
+	private void decodeIfPending(int columnId) {
+		if (isPending(columnId)) {
+			clearPending(columnId);
+			plan.getColumnDecoder(columnId).decode(data, offsets[columnId], this, columnId);
+		}
+	}
+	
+	private static boolean rangeEquals(ByteBuffer data, int start, ByteBuffer otherData, int otherStart, int length) {
+		ByteBuffer value = data.duplicate();
+		value.limit(start + length);
+		value.position(start);
+		ByteBuffer otherValue = otherData.duplicate();
+		otherValue.limit(otherStart + length);
+		otherValue.position(otherStart);
+		return value.equals(otherValue);
+	}
+	
+	private Object getObject(int columnId) {
+		return objects == null ? null : objects[columnId];
 	}
 	
-	public boolean isNullImage() {
-		return isAllNull;
+	private static Object decodeString(ByteBuffer data, int start, int length, Charset charset) {
+		if (charset == null) {
+			return ParserHelper.getBytes(data, start, start + length);
+		}
+		return ParserHelper.getString(data, start, start + length, charset);
 	}
 	
-	public void isNullImage(boolean isAllNull) {
-		this.isAllNull = isAllNull;
+	private void ensureCapacity(int columnId) {
+		if (columnId < columnCount)
+			return;
+		int capacity = types.length;
+		if (columnId >= capacity) {
+			capacity = Math.max(columnId + 1, capacity * 2);
+			types = Arrays.copyOf(types, capacity);
+			primitives = Arrays.copyOf(primitives, capacity);
+			nullBitmap = Arrays.copyOf(nullBitmap, (capacity + 63) >>> 6);
+			if (absentBitmap != null)
+				absentBitmap = Arrays.copyOf(absentBitmap, nullBitmap.length);
+			if (objects != null)
+				objects = Arrays.copyOf(objects, capacity);
+		}
+		columnCount = columnId + 1;
 	}
 }
@@ -23,6 +23,7 @@ public class TableDefine {
 	private final long tableId;
 	private String schemaName;
 	private String tableName;
+	private int[] primaryKeyColumns = null;
 	public TableDefine(long tableId) {
 		columnMap = new HashMap<Integer, ColumnDefine>();
 		this.tableId = tableId;
@@ -71,6 +72,20 @@ public class TableDefine {
 		return columnMap.get(columnId);
 	}
 	
+	/**
+	 * @param primaryKeyColumns the column ids of primary key (SIMPLE_PRIMARY_KEY of table map).
+	 */
+	public void setPrimaryKeyColumns(int[] primaryKeyColumns) {
+		this.primaryKeyColumns = primaryKeyColumns;
+	}
+	
+	/**
+	 * @return the column ids of primary key, null if unknown.
+	 */
+	public int[] getPrimaryKeyColumns() {
+		return primaryKeyColumns;
+	}
+	
 	public int getColumnCount() {
 		return columnMap.size();
 	}
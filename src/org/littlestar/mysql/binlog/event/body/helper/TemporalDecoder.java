@@ -0,0 +1,396 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.event.body.helper;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * Decoder of date and time columns, the value is kept in the row-image as a packed long, and only 
+ * formatted to string when the value is read (RowImage.getColumnValue()). 
+ * 
+ * https://dev.mysql.com/doc/internals/en/date-and-time-data-type-representation.html
+ * MySQL 5.6.4 introduced TIME2, TIMESTAMP2 and DATETIME2 with "fractional seconds part", the 
+ * length of fractional part is decided by the fsp of the column define, e.g. timestamp(3).
+ * 
+ * Packed values: 
+ *   DATE              : year*16*32 + month*32 + day 
+ *   TIME              : (+/-) HH*10000 + MM*100 + SS 
+ *   DATETIME          : YYYYMMDDhhmmss 
+ *   TIMESTAMP(2)      : micro seconds since epoch 
+ *   DATETIME2, TIME2  : the packed (int-part &lt;&lt; 24 + micro seconds) value of MySQL (my_time.cc).
+ */
+public abstract class TemporalDecoder extends ColumnDecoder {
+	// java.time formatter is immutable and thread-safe.
+	private static final DateTimeFormatter TIMESTAMP_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+			.withZone(ZoneId.systemDefault());
+	private static final int[] FRACTION_DIVISORS = { 1000000, 100000, 10000, 1000, 100, 10, 1 };
+	
+	protected final int fsp;
+	protected final int fractionLength;
+	
+	protected TemporalDecoder(ByteOrder order, int fsp) {
+		super(order);
+		this.fsp = fsp;
+		this.fractionLength = ParserHelper.getTimeFractionalLength(fsp);
+	}
+	
+	/**
+	 * Format the packed value to MySQL's string format.
+	 */
+	public abstract String format(long packed);
+	
+	protected abstract long getPacked(final ByteBuffer data, final int pos);
+	
+	protected abstract int getLength();
+	
+	@Override
+	public int decode(final ByteBuffer data, final int pos, final RowImage rowImage, final int col) {
+		rowImage.setTemporal(col, getPacked(data, pos), this);
+		return pos + getLength();
+	}
+	
+	@Override
+	public int skip(final ByteBuffer data, final int pos) {
+		return pos + getLength();
+	}
+	
+	/**
+	 * @param fsp fractional seconds precision, 0 if the column has no fractional part (v1).
+	 */
+	public static TemporalDecoder newDecoder(int columnType, ByteOrder order, int fsp) {
+		switch (columnType) {
+		case 0x0e:  // NEWDATE
+		case 0x0a:  // DATE: 3 byte
+			return new DateDecoder(order);
+		case 0x0b:  // TIME: 3 bytes
+			return new TimeDecoder(order);
+		case 0x0c:  // DATETIME 8 bytes
+			return new DatetimeDecoder(order);
+		case 0x07: // TIMESTAMP 4 bytes
+			return new TimestampDecoder(order, 0, false);
+		case 0x11:  // TIMESTAMP2
+			return new TimestampDecoder(order, fsp, true);
+		case 0x12:  // DATETIME2
+			return new Datetime2Decoder(order, fsp);
+		case 0x13:  // TIME2
+			return new Time2Decoder(order, fsp);
+		default:
+			throw new IllegalArgumentException("Not a temporal column type: 0x" + Integer.toHexString(columnType));
+		}
+	}
+	
+	/*
+	 * Fractional-part of TIME2/DATETIME2/TIMESTAMP2, big endian.
+	 *   FSP 1,2: 1 byte, 1/100 seconds; FSP 3,4: 2 bytes, 1/10000 seconds; FSP 5,6: 3 bytes, micro seconds;
+	 */
+	protected long getMicroSeconds(final ByteBuffer data, final int pos) {
+		switch (fractionLength) {
+		case 1:
+			return ParserHelper.getUnsignedInteger(data, pos, 1, ByteOrder.BIG_ENDIAN) * 10000L;
+		case 2:
+			return ParserHelper.getUnsignedInteger(data, pos, 2, ByteOrder.BIG_ENDIAN) * 100L;
+		case 3:
+			return ParserHelper.getUnsignedInteger(data, pos, 3, ByteOrder.BIG_ENDIAN);
+		default:
+			return 0L;
+		}
+	}
+	
+	protected static int appendDigits(final char[] buffer, int n, long value, final int width) {
+		for (int i = n + width - 1; i >= n; i--) {
+			buffer[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return n + width;
+	}
+	
+	/**
+	 * Append ".ffffff" (fsp digits) of the micro seconds.
+	 */
+	protected int appendFraction(final char[] buffer, int n, long microSeconds) {
+		if (fsp <= 0)
+			return n;
+		buffer[n++] = '.';
+		return appendDigits(buffer, n, microSeconds / FRACTION_DIVISORS[fsp], fsp);
+	}
+	
+	static final class DateDecoder extends TemporalDecoder {
+		DateDecoder(ByteOrder order) {
+			super(order, 0);
+		}
+		
+		@Override
+		protected long getPacked(final ByteBuffer data, final int pos) {
+			return ParserHelper.getUnsignedInteger(data, pos, 3, ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		@Override
+		protected int getLength() {
+			return 3;
+		}
+		
+		@Override
+		public String format(long packed) {
+			char[] buffer = new char[10];
+			int n = appendDigits(buffer, 0, packed >> 9, 4);
+			buffer[n++] = '-';
+			n = appendDigits(buffer, n, (packed >> 5) & 0x0F, 2);
+			buffer[n++] = '-';
+			n = appendDigits(buffer, n, packed & 0x1F, 2);
+			return new String(buffer, 0, n);
+		}
+	}
+	
+	static final class TimeDecoder extends TemporalDecoder {
+		TimeDecoder(ByteOrder order) {
+			super(order, 0);
+		}
+		
+		@Override
+		protected long getPacked(final ByteBuffer data, final int pos) {
+			return ParserHelper.getInteger(data, pos, 3, ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		@Override
+		protected int getLength() {
+			return 3;
+		}
+		
+		@Override
+		public String format(long packed) {
+			char[] buffer = new char[11];
+			int n = 0;
+			if (packed < 0) {
+				buffer[n++] = '-';
+				packed = -packed;
+			}
+			long hours = packed / 10000;
+			n = appendDigits(buffer, n, hours, hours > 99 ? 3 : 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, (packed / 100) % 100, 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, packed % 100, 2);
+			return new String(buffer, 0, n);
+		}
+	}
+	
+	static final class DatetimeDecoder extends TemporalDecoder {
+		DatetimeDecoder(ByteOrder order) {
+			super(order, 0);
+		}
+		
+		@Override
+		protected long getPacked(final ByteBuffer data, final int pos) {
+			return ParserHelper.getLong(data, pos, 8, ByteOrder.LITTLE_ENDIAN);
+		}
+		
+		@Override
+		protected int getLength() {
+			return 8;
+		}
+		
+		@Override
+		public String format(long packed) {
+			long date = packed / 1000000L;
+			long time = packed % 1000000L;
+			char[] buffer = new char[19];
+			int n = appendDigits(buffer, 0, date / 10000, 4);
+			buffer[n++] = '-';
+			n = appendDigits(buffer, n, (date / 100) % 100, 2);
+			buffer[n++] = '-';
+			n = appendDigits(buffer, n, date % 100, 2);
+			buffer[n++] = ' ';
+			n = appendDigits(buffer, n, time / 10000, 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, (time / 100) % 100, 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, time % 100, 2);
+			return new String(buffer, 0, n);
+		}
+	}
+	
+	/**
+	 * TIMESTAMP: 4 bytes little endian seconds since epoch; TIMESTAMP2: Same as before 5.6.4, 
+	 * except big endian rather than little endian, + fractional-seconds storage. 
+	 * The string is formatted in the default time zone of JVM.
+	 */
+	static final class TimestampDecoder extends TemporalDecoder {
+		private final boolean v2;
+		
+		TimestampDecoder(ByteOrder order, int fsp, boolean v2) {
+			super(order, fsp);
+			this.v2 = v2;
+		}
+		
+		@Override
+		protected long getPacked(final ByteBuffer data, final int pos) {
+			long seconds = ParserHelper.getUnsignedLong(data, pos, 4, v2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			return seconds * 1000000L + getMicroSeconds(data, pos + 4);
+		}
+		
+		@Override
+		protected int getLength() {
+			return 4 + fractionLength;
+		}
+		
+		@Override
+		public String format(long packed) {
+			if (packed == 0L) {
+				char[] zero = new char[19 + (fsp > 0 ? fsp + 1 : 0)];
+				int n = appendDigits(zero, 0, 0, 4);
+				zero[n++] = '-';
+				n = appendDigits(zero, n, 0, 2);
+				zero[n++] = '-';
+				n = appendDigits(zero, n, 0, 2);
+				zero[n++] = ' ';
+				n = appendDigits(zero, n, 0, 2);
+				zero[n++] = ':';
+				n = appendDigits(zero, n, 0, 2);
+				zero[n++] = ':';
+				n = appendDigits(zero, n, 0, 2);
+				n = appendFraction(zero, n, 0);
+				return new String(zero, 0, n);
+			}
+			String timestamp = TIMESTAMP_FORMATTER.format(Instant.ofEpochSecond(packed / 1000000L));
+			if (fsp <= 0)
+				return timestamp;
+			char[] fraction = new char[fsp + 1];
+			int n = appendFraction(fraction, 0, packed % 1000000L);
+			return timestamp + new String(fraction, 0, n);
+		}
+	}
+	
+	/*
+	 * DATETIME2 encoding for nonfractional part, 5 bytes big endian: 
+	 *   1 bit sign (1= non-negative, 0= negative, reserved), 17 bits year*13+month (year 0-9999, month 0-12) 
+	 *   5 bits day (0-31), 5 bits hour (0-23), 6 bits minute (0-59), 6 bits second (0-59)
+	 */
+	static final class Datetime2Decoder extends TemporalDecoder {
+		private static final long DATETIMEF_INT_OFS = 0x8000000000L;
+		
+		Datetime2Decoder(ByteOrder order, int fsp) {
+			super(order, fsp);
+		}
+		
+		@Override
+		protected long getPacked(final ByteBuffer data, final int pos) {
+			long intPart = ParserHelper.getUnsignedLong(data, pos, 5, ByteOrder.BIG_ENDIAN) - DATETIMEF_INT_OFS;
+			return (intPart << 24) + getMicroSeconds(data, pos + 5);
+		}
+		
+		@Override
+		protected int getLength() {
+			return 5 + fractionLength;
+		}
+		
+		@Override
+		public String format(long packed) {
+			long ymdhms = packed >> 24;
+			long ymd = ymdhms >> 17;
+			long ym = ymd >> 5;
+			long hms = ymdhms & 0x1FFFF;
+			char[] buffer = new char[26];
+			int n = appendDigits(buffer, 0, ym / 13, 4);
+			buffer[n++] = '-';
+			n = appendDigits(buffer, n, ym % 13, 2);
+			buffer[n++] = '-';
+			n = appendDigits(buffer, n, ymd & 0x1F, 2);
+			buffer[n++] = ' ';
+			n = appendDigits(buffer, n, hms >> 12, 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, (hms >> 6) & 0x3F, 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, hms & 0x3F, 2);
+			n = appendFraction(buffer, n, packed & 0xFFFFFF);
+			return new String(buffer, 0, n);
+		}
+	}
+	
+	/*
+	 * TIME2 encoding for nonfractional part, 3 bytes big endian:
+	 *   1 bit sign (1= non-negative, 0= negative), 1 bit unused, 10 bits hour (0-838), 
+	 *   6 bits minute (0-59), 6 bits second (0-59)
+	 * Negative value with fractional part is stored as 2's complement of the whole value.
+	 */
+	static final class Time2Decoder extends TemporalDecoder {
+		private static final long TIMEF_INT_OFS = 0x800000L;
+		private static final long TIMEF_OFS = 0x800000000000L;
+		
+		Time2Decoder(ByteOrder order, int fsp) {
+			super(order, fsp);
+		}
+		
+		@Override
+		protected long getPacked(final ByteBuffer data, final int pos) {
+			long intPart;
+			long frac;
+			switch (fractionLength) {
+			case 1:
+				intPart = ParserHelper.getUnsignedLong(data, pos, 3, ByteOrder.BIG_ENDIAN) - TIMEF_INT_OFS;
+				frac = ParserHelper.getUnsignedInteger(data, pos + 3, 1, ByteOrder.BIG_ENDIAN);
+				if (intPart < 0 && frac != 0) {
+					intPart++;
+					frac -= 0x100;
+				}
+				return (intPart << 24) + frac * 10000L;
+			case 2:
+				intPart = ParserHelper.getUnsignedLong(data, pos, 3, ByteOrder.BIG_ENDIAN) - TIMEF_INT_OFS;
+				frac = ParserHelper.getUnsignedInteger(data, pos + 3, 2, ByteOrder.BIG_ENDIAN);
+				if (intPart < 0 && frac != 0) {
+					intPart++;
+					frac -= 0x10000;
+				}
+				return (intPart << 24) + frac * 100L;
+			case 3:
+				return ParserHelper.getUnsignedLong(data, pos, 6, ByteOrder.BIG_ENDIAN) - TIMEF_OFS;
+			default:
+				intPart = ParserHelper.getUnsignedLong(data, pos, 3, ByteOrder.BIG_ENDIAN) - TIMEF_INT_OFS;
+				return intPart << 24;
+			}
+		}
+		
+		@Override
+		protected int getLength() {
+			return 3 + fractionLength;
+		}
+		
+		@Override
+		public String format(long packed) {
+			char[] buffer = new char[18];
+			int n = 0;
+			if (packed < 0) {
+				buffer[n++] = '-';
+				packed = -packed;
+			}
+			long hms = packed >> 24;
+			long hours = (hms >> 12) & 0x3FF;
+			n = appendDigits(buffer, n, hours, hours > 99 ? 3 : 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, (hms >> 6) & 0x3F, 2);
+			buffer[n++] = ':';
+			n = appendDigits(buffer, n, hms & 0x3F, 2);
+			n = appendFraction(buffer, n, packed & 0xFFFFFF);
+			return new String(buffer, 0, n);
+		}
+	}
+}
@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 import org.littlestar.mysql.binlog.parser.ParserHelper;
@@ -37,7 +39,7 @@ public class BeginLoadQueryEvent extends EventBodyDefaultImpl {
 	private byte[] blockData;
 	private int pos = 0;
 
-	public BeginLoadQueryEvent(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public BeginLoadQueryEvent(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		fileId = getUnsignedLong(bodyData, pos, pos += FILE_ID_LENGTH);
 		blockData = getBytes(bodyData, pos, eventHeader.getEventBodyLength());
@@ -18,6 +18,7 @@ package org.littlestar.mysql.binlog.event.body.impl;
 
 import java.util.Arrays;
 import java.util.BitSet;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 import org.littlestar.mysql.binlog.event.EventType;
@@ -26,22 +27,34 @@ import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 import org.littlestar.mysql.binlog.parser.ParserHelper;
 
+/**
+ * The event body is a read-only ByteBuffer, indexed from 0 to event body length, it's usually a
+ * slice of the mapped binlog file (zero-copy), so it's only valid before the parser is closed.
+ * All fields are read by absolute index, the position of bodyData is never changed.
+ */
 public class EventBodyDefaultImpl implements EventBody {
-	protected final byte[] bodyData;
+	protected final ByteBuffer bodyData;
 	protected final EventHeader eventHeader;
 	protected final BinlogFileMeta meta;
 	protected final ByteOrder order;
 	
-	public EventBodyDefaultImpl(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public EventBodyDefaultImpl(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		this.eventHeader = eventHeader;
-		this.bodyData = bodyData;
 		this.meta = meta;
 		order = meta.getByteOrder();
+		this.bodyData = bodyData.order(order);
+	}
+	
+	public EventBodyDefaultImpl(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+		this(ByteBuffer.wrap(bodyData).asReadOnlyBuffer(), eventHeader, meta);
 	}
 	
+	/**
+	 * Copy of the raw event body.
+	 */
 	@Override
 	public byte[] getBodyData() {
-		return bodyData;
+		return getBytes(bodyData, 0, bodyData.limit());
 	}
 	
 	public EventHeader getEventHeader() {
@@ -71,7 +84,7 @@ public class EventBodyDefaultImpl implements EventBody {
 	public byte[] getChecksumValue() {
 		int length = getChecksumLength();
 		if (length > 0) {
-			return Arrays.copyOfRange(bodyData, bodyData.length - length, bodyData.length);
+			return getBytes(bodyData, bodyData.limit() - length, bodyData.limit());
 		} else {
 			return null;
 		}
@@ -89,7 +102,7 @@ public class EventBodyDefaultImpl implements EventBody {
 	
 	@Override
 	public String toString() {
-		return ParserHelper.getFormattedHexString(bodyData, 16);
+		return ParserHelper.getFormattedHexString(getBodyData(), 16);
 	}
 
 	@Override
@@ -98,8 +111,7 @@ public class EventBodyDefaultImpl implements EventBody {
 	}
 	
 	protected int getInteger(byte[] bytes,  int from, int to) {
-		byte[] raw = Arrays.copyOfRange(bytes, from, to);
-		return ParserHelper.getInteger(raw, order);
+		return ParserHelper.getInteger(bytes, from, to - from, order);
 	}
 	
 	protected int getInteger(byte[] bytes) {
@@ -111,8 +123,7 @@ public class EventBodyDefaultImpl implements EventBody {
 	}
 	
 	protected int getUnsignedInteger(byte[] bytes, int from, int to) {
-		byte[] raw = Arrays.copyOfRange(bytes, from, to);
-		return ParserHelper.getUnsignedInteger(raw, order); 
+		return ParserHelper.getUnsignedInteger(bytes, from, to - from, order); 
 	}
 	
 	protected int getUnsignedInteger(byte[] bytes) {
@@ -120,8 +131,7 @@ public class EventBodyDefaultImpl implements EventBody {
 	}
 	
 	protected long getLong(byte[] bytes, int from, int to) {
-		byte[] raw = getBytes(bytes, from, to);
-		return ParserHelper.getLong(raw, order);
+		return ParserHelper.getLong(bytes, from, to - from, order);
 	}
 	
 	protected long getLong(byte[] bytes) {
@@ -129,8 +139,7 @@ public class EventBodyDefaultImpl implements EventBody {
 	}
 	
 	protected long getUnsignedLong(byte[] bytes, int from, int to) {
-		byte[] raw = getBytes(bytes, from, to);
-		return ParserHelper.getUnsignedLong(raw, order);
+		return ParserHelper.getUnsignedLong(bytes, from, to - from, order);
 	}
 	
 	protected long getUnsignedLong(byte[] bytes) {
@@ -186,4 +195,61 @@ public class EventBodyDefaultImpl implements EventBody {
 	protected byte[] getBytes(byte[] bytes, int from, int to) {
 		return  Arrays.copyOfRange(bytes, from, to);
 	}
+	
+	protected int getInteger(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getInteger(bytes, from, to - from, order);
+	}
+	
+	protected int getUnsignedInteger(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getUnsignedInteger(bytes, from, to - from, order);
+	}
+	
+	protected long getLong(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getLong(bytes, from, to - from, order);
+	}
+	
+	protected long getUnsignedLong(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getUnsignedLong(bytes, from, to - from, order);
+	}
+	
+	protected float getFloat(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getFloat(bytes, from, order);
+	}
+	
+	public double getDouble(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getDouble(bytes, from, order);
+	}
+	
+	protected BitSet getBitSet(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getBitSet(getBytes(bytes, from, to), order);
+	}
+	
+	protected byte[] getPackedInteger(ByteBuffer bytes, int from) {
+		return ParserHelper.getPackedInteger(bytes, from);
+	}
+	
+	protected int getPackedIntegerSize(ByteBuffer bytes, int from) {
+		return ParserHelper.getPackedIntegerSize(bytes.get(from));
+	}
+	
+	protected long getPackedLong(ByteBuffer bytes, int from) {
+		return ParserHelper.getPackedLong(bytes, from, order);
+	}
+	
+	protected Object[] getPackedString(ByteBuffer bytes, int from) {
+		return ParserHelper.getPackedString(bytes, from, order);
+	}
+	
+	protected String getString(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getString(getBytes(bytes, from, to));
+	}
+	
+	protected String getNulTerminatedString(ByteBuffer bytes, int from, int to) {
+		byte[] raw = ParserHelper.getNulTerminatedString(bytes, from, to);
+		return getString(raw, 0, raw.length);
+	}
+	
+	protected byte[] getBytes(ByteBuffer bytes, int from, int to) {
+		return ParserHelper.getBytes(bytes, from, to);
+	}
 }
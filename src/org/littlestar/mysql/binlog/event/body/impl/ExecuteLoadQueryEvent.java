@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 
@@ -66,7 +68,7 @@ public class ExecuteLoadQueryEvent extends EventBodyDefaultImpl {
 	private String schema;
 	private String query;
 	
-	public ExecuteLoadQueryEvent(byte[] bodyData, EventHeader eventHeader, BinlogFileMeta meta) {
+	public ExecuteLoadQueryEvent(ByteBuffer bodyData, EventHeader eventHeader, BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		slaveProxyId = getUnsignedLong(bodyData, pos, pos += SLAVE_PROXY_ID_LENGTH);
 		executionTime = getUnsignedLong(bodyData, pos, pos += EXECUTION_TIME_LENGTH);
@@ -16,6 +16,7 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -43,7 +44,7 @@ public class FormatDescriptionEventBody extends EventBodyDefaultImpl {
 	
 	private final BinlogFileMeta binlogFileMeta; 
 	
-	public FormatDescriptionEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public FormatDescriptionEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		binlogFileMeta = meta;
 	}
@@ -16,7 +16,7 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.Date;
 
@@ -117,16 +117,14 @@ public class GtidLogEventBody extends EventBodyDefaultImpl {
 	private long immediateServerVersion = -1;
 	private int pos = 0;
 	
-	public GtidLogEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public GtidLogEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		flags = getInteger(bodyData, pos, pos += ENCODED_FLAG_LENGTH);
 		encodedSID = getBytes(bodyData, pos, pos += ENCODED_SID_LENGTH);
 		encodedGNO = getBytes(bodyData, pos, pos += ENCODED_GNO_LENGTH);
 		ltType = getBytes(bodyData, pos, pos += LT_TYPE_LENGTH)[0];
-		byte[] rawLastCommit = getBytes(bodyData, pos, pos += LAST_COMMITTED_LENGTH);
-		lastCommit = ParserHelper.getUnsignedLong(rawLastCommit, ByteOrder.BIG_ENDIAN);
-		byte[] rawSequenceNumber = getBytes(bodyData, pos, pos += SEQUENCE_NUMBER_LENGTH); //
-		sequenceNumber = ParserHelper.getUnsignedLong(rawSequenceNumber, ByteOrder.BIG_ENDIAN);
+		lastCommit = getUnsignedLong(bodyData, pos, pos += LAST_COMMITTED_LENGTH);
+		sequenceNumber = getUnsignedLong(bodyData, pos, pos += SEQUENCE_NUMBER_LENGTH);
 		long remainBytes = getBodyDataLength() - pos;
 		if (remainBytes >= 7) {
 			immediateCommittedTimestamp = getBytes(bodyData, pos, pos += IMMEDIATE_COMMIT_TIMESTAMP_LENGTH);
@@ -188,8 +186,7 @@ public class GtidLogEventBody extends EventBodyDefaultImpl {
 	
 	public long[] getCommittedTimestamp(byte[] timestamp) {
 		long[] retValue = new long[2];
-		byte[] padedTs = rpad(timestamp, new byte[] { 0x00 });
-		long tsValue = ParserHelper.getUnsignedLong(padedTs, ByteOrder.BIG_ENDIAN);
+		long tsValue = getUnsignedLong(timestamp, 0, timestamp.length);
 		//System.out.println(tsValue);
 		//long tsValue = 1576117446907846L;
 		long fractional = tsValue % 1000000L;
@@ -271,13 +268,6 @@ public class GtidLogEventBody extends EventBodyDefaultImpl {
 		return immediateServerVersion;
 	}
 	
-	private static byte[] rpad(byte[] s, byte[] p) {
-		byte[] retVal = new byte[s.length + p.length];
-		System.arraycopy(s, 0, retVal, 0, s.length);
-		System.arraycopy(p, 0, retVal, s.length, p.length);
-		return retVal;
-	}
-	
 	private String getGtidNext() {
 		EventType et = getEventHeader().getEventType();
 		if (et.equals(EventType.ANONYMOUS_GTID_LOG_EVENT)) {
@@ -16,9 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
@@ -48,21 +47,17 @@ public class PreviousGtidsLogEventBody extends EventBodyDefaultImpl {
 	private ArrayList<String> previousGtidSet = new ArrayList<String>();
 	private int pos = 0;
 	
-	public PreviousGtidsLogEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public PreviousGtidsLogEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
-		byte[] rawGtidCount = Arrays.copyOfRange(bodyData, pos, pos += 8);
-		long gtidCount = ParserHelper.getUnsignedLong(rawGtidCount, ByteOrder.BIG_ENDIAN);
+		long gtidCount = getUnsignedLong(bodyData, pos, pos += 8);
 		StringBuilder intervalsSet = new StringBuilder();
 		for (long i = 0; i < gtidCount; i++) {
 			byte[] rawUuid = getBytes(bodyData, pos, pos += 16);
-			byte[] rawIntervalsCount = getBytes(bodyData, pos, pos += 8);
-			long intervalsCount = ParserHelper.getUnsignedLong(rawIntervalsCount, ByteOrder.BIG_ENDIAN);
+			long intervalsCount = getUnsignedLong(bodyData, pos, pos += 8);
 			for (int j = 0; j < intervalsCount; j++) {
 				//intervals format: startInterval - endInterval
-				byte[] rawStartInterval = getBytes(bodyData, pos, pos += 8);
-				long startInterval = ParserHelper.getUnsignedLong(rawStartInterval, ByteOrder.BIG_ENDIAN);
-				byte[] rawEndInterval = Arrays.copyOfRange(bodyData, pos, pos += 8);
-				long endInterval = ParserHelper.getUnsignedLong(rawEndInterval, ByteOrder.BIG_ENDIAN) - 1L;
+				long startInterval = getUnsignedLong(bodyData, pos, pos += 8);
+				long endInterval = getUnsignedLong(bodyData, pos, pos += 8) - 1L;
 				intervalsSet.append(startInterval).append("-").append(endInterval);
 				if (j < gtidCount - 1)
 					intervalsSet.append(":");
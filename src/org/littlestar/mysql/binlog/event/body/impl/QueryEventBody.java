@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 
@@ -59,7 +61,7 @@ public class QueryEventBody extends EventBodyDefaultImpl {
 	private String query;
 	private int pos = 0;
 	
-	public QueryEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public QueryEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		
 		slaveProxyId = getUnsignedLong(bodyData, pos, pos += SLAVE_PROXY_ID_LENGTH);
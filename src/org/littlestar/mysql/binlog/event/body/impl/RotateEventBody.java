@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 import org.littlestar.mysql.binlog.parser.ParserHelper;
@@ -44,7 +46,7 @@ public class RotateEventBody extends EventBodyDefaultImpl {
 	private String nextBinlogName;
 	private int pos = 0;
 	
-	public RotateEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public RotateEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		if (meta.getBinlogVersion() > 1) {
 			position = getUnsignedLong(bodyData, pos, pos += POSITION_LENGTH);
@@ -16,6 +16,7 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
 import java.util.Date;
 
 import org.littlestar.mysql.binlog.event.header.EventHeader;
@@ -39,7 +40,7 @@ public class StartEventV3Body extends EventBodyDefaultImpl{
 	public static final int MYSQL_SERVER_VERSION_LENGTH = 50;
 	public static final int CREATE_TIMESTAMP_LENGTH = 4;
 	private final BinlogFileMeta binlogFileMeta; 
-	public StartEventV3Body(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public StartEventV3Body(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		binlogFileMeta = meta;
 	}
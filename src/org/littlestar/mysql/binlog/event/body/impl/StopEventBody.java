@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 import org.littlestar.mysql.binlog.parser.ParserHelper;
@@ -27,7 +29,7 @@ import org.littlestar.mysql.binlog.parser.ParserHelper;
  */
 public class StopEventBody extends EventBodyDefaultImpl {
 
-	public StopEventBody(byte[] bodyData, EventHeader eventHeader, BinlogFileMeta meta) {
+	public StopEventBody(ByteBuffer bodyData, EventHeader eventHeader, BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 	}
 
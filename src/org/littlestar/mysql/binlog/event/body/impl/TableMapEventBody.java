@@ -16,6 +16,7 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 
@@ -50,8 +51,11 @@ import org.littlestar.mysql.binlog.parser.ParserHelper;
  *   lenenc-int     column-count
  *   string.var_len [length=$column-count] column-def
  *   lenenc-str     column-meta-def
- *   n              NULL-bitmask, length: (column-count + 8) / 7
+ *   n              NULL-bitmask, length: (column-count + 7) / 8
  *
+ * MySQL writes the table map before every rows event group, if the body (without checksum) is the 
+ * same as the current table map of the table id, the TableDefine (and the decoder plan cached by 
+ * BinlogFileMeta) is reused instead of parsing it again, see getTableMapEventBody(...).
  */
 
 
@@ -64,12 +68,51 @@ public class TableMapEventBody extends EventBodyDefaultImpl {
 	private TableMapEventOptionalMetaData optionalMetaData;
 	private int pos = 0;
 	
+	/**
+	 * Create the table map event body, reuse the TableDefine of current table map of the table id 
+	 * if the body is not changed.
+	 */
+	public static TableMapEventBody getTableMapEventBody(final ByteBuffer bodyData, final EventHeader eventHeader,
+			final BinlogFileMeta meta) {
+		TableMapEventBody current = meta.getTableMapEventBody(getTableId(bodyData, meta));
+		if (current != null && current.isSameBody(bodyData)) {
+			return new TableMapEventBody(bodyData, eventHeader, meta, current);
+		}
+		return new TableMapEventBody(bodyData, eventHeader, meta);
+	}
+	
+	private static long getTableId(final ByteBuffer bodyData, final BinlogFileMeta meta) {
+		int length = meta.getPostHeaderLength(EventType.TABLE_MAP_EVENT) == 6 ? 4 : 6;
+		return ParserHelper.getUnsignedLong(bodyData, 0, length, meta.getByteOrder());
+	}
+	
+	/**
+	 * @return true if the other event body (with checksum) is the same table map, checksum is not compared.
+	 */
+	public boolean isSameBody(final ByteBuffer otherBodyData) {
+		int length = getBodyDataLength(); // without checksum
+		if (otherBodyData.limit() - getChecksumLength() != length)
+			return false;
+		ByteBuffer body = bodyData.duplicate();
+		body.position(0).limit(length);
+		ByteBuffer otherBody = otherBodyData.duplicate();
+		otherBody.position(0).limit(length);
+		return body.equals(otherBody);
+	}
+	
+	private TableMapEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta,
+			final TableMapEventBody same) {
+		super(bodyData, eventHeader, meta);
+		tableDefine = same.tableDefine;
+		optionalMetaData = same.optionalMetaData;
+	}
+	
 	/**
 	 * @param bodyData
 	 * @param eventHeader
 	 * @param parser
 	 */
-	public TableMapEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public TableMapEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		// table-id
 		int postHeaderLength = meta.getPostHeaderLength(EventType.TABLE_MAP_EVENT);
@@ -97,9 +140,8 @@ public class TableMapEventBody extends EventBodyDefaultImpl {
 		tableDefine.setTableName(tableName);
 		
 		//column-count
-		byte[] rawColumnCount = getPackedInteger(bodyData, pos);
-		pos += rawColumnCount.length;
-		int columnCount = getUnsignedInteger(rawColumnCount);
+		int columnCount = (int) getPackedLong(bodyData, pos);
+		pos += getPackedIntegerSize(bodyData, pos);
 		
 		//column_type_def
 		byte[] rawColumnType = getBytes(bodyData, pos, pos += columnCount);
@@ -114,9 +156,8 @@ public class TableMapEventBody extends EventBodyDefaultImpl {
 		}
 		
 		// The length of the metadata block.
-		byte[] rawColumnMetaLength = getPackedInteger(bodyData, pos);
-		pos += rawColumnMetaLength.length;
-		long columnMetaLength = getUnsignedLong(rawColumnMetaLength);
+		long columnMetaLength = getPackedLong(bodyData, pos);
+		pos += getPackedIntegerSize(bodyData, pos);
 		
 		//column_meta_def:
 		//https://dev.mysql.com/doc/dev/mysql-server/8.0.11/classbinary__log_1_1Table__map__event.html#Table_table_map_event_column_types
@@ -156,7 +197,7 @@ public class TableMapEventBody extends EventBodyDefaultImpl {
 			}
 		}
 		// NULL-bitmask
-		int nullableBitMapLength = ((int) columnCount + 8) / 7;
+		int nullableBitMapLength = (columnCount + 7) / 8;
 		BitSet nullableBitSet = getBitSet(bodyData, pos, pos += nullableBitMapLength);
 		for (int i = 0; i < tableDefine.getColumnCount(); i++) {
 			ColumnDefine columnDef = tableDefine.getColumnDefine(i);
@@ -179,6 +220,46 @@ public class TableMapEventBody extends EventBodyDefaultImpl {
 				tableDefine.setColumnName(i, colunmNames.get(i));
 			}
 		}
+		
+		// 主键列(SIMPLE_PRIMARY_KEY), 用于生成UPDATE/DELETE语句的where条件。
+		ArrayList<Integer> primaryKeyColumns = optionalMetaData.getSimplePrimaryKey();
+		if (primaryKeyColumns.size() > 0) {
+			int[] pkColumns = new int[primaryKeyColumns.size()];
+			for (int i = 0; i < pkColumns.length; i++) {
+				pkColumns[i] = primaryKeyColumns.get(i);
+			}
+			tableDefine.setPrimaryKeyColumns(pkColumns);
+		}
+		
+		// 数值列的unsigned标志(SIGNEDNESS), 解析rows event时用于确定整数列的取值范围。
+		int numericColumnCount = 0;
+		for (int i = 0; i < columnCount; i++) {
+			if (tableDefine.getColumnDefine(i).isSignednessType())
+				numericColumnCount++;
+		}
+		boolean[] unsignedFlags = optionalMetaData.getNumericColumnUnsignedFlags(numericColumnCount);
+		for (int i = 0, index = 0; i < columnCount; i++) {
+			ColumnDefine columnDef = tableDefine.getColumnDefine(i);
+			if (columnDef.isSignednessType())
+				columnDef.setIsUnsigned(unsignedFlags != null && unsignedFlags[index++]);
+			else
+				columnDef.setIsUnsigned(false);
+		}
+		
+		// 字符列的collation(DEFAULT_CHARSET/COLUMN_CHARSET), 解析rows event时用于确定列的字符集。
+		int characterColumnCount = 0;
+		for (int i = 0; i < columnCount; i++) {
+			if (tableDefine.getColumnDefine(i).isCharacterType())
+				characterColumnCount++;
+		}
+		int[] collationIds = optionalMetaData.getCharacterColumnCollationIds(characterColumnCount);
+		if (collationIds != null) {
+			for (int i = 0, index = 0; i < columnCount; i++) {
+				ColumnDefine columnDef = tableDefine.getColumnDefine(i);
+				if (columnDef.isCharacterType())
+					columnDef.setCollationId(collationIds[index++]);
+			}
+		}
 	}
 	
 	public long getTableId() {
@@ -16,6 +16,7 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -41,7 +42,7 @@ public class TableMapEventOptionalMetaData {
 	private final HashMap<Integer, byte[]> optionalMetaData;
 	private final ByteOrder order;
 
-	public TableMapEventOptionalMetaData(final byte[] bodyData, final int startPos, final int endPos,
+	public TableMapEventOptionalMetaData(final ByteBuffer bodyData, final int startPos, final int endPos,
 			final ByteOrder order) {
 		optionalMetaData = new HashMap<Integer, byte[]>();
 		this.order = order;
@@ -61,17 +62,14 @@ public class TableMapEventOptionalMetaData {
 			 *  field-value-length = length of packed integer; 
 			 *  field-value        = value of field-value-length;
 			 * */
-			byte[] rawFieldType = Arrays.copyOfRange(bodyData, pos, pos += 1);
-			int fieldType = ParserHelper.getInteger(rawFieldType, order);
-			byte[] rawFieldLength = ParserHelper.getPackedInteger(bodyData, pos);
-			pos += rawFieldLength.length;
-			int fieldLength = ParserHelper.getUnsignedInteger(rawFieldLength, order);
+			int fieldType = bodyData.get(pos++);
+			int fieldLength = (int) ParserHelper.getPackedLong(bodyData, pos, order);
+			pos += ParserHelper.getPackedIntegerSize(bodyData.get(pos));
 			if (fieldLength > 0) {
-				byte[] fieldValue = Arrays.copyOfRange(bodyData, pos, pos += fieldLength);
+				byte[] fieldValue = ParserHelper.getBytes(bodyData, pos, pos += fieldLength);
 				optionalMetaData.put(fieldType, fieldValue);
 			}
 		}
-		getSimplePrimaryKey();
 	}
 	
 	public byte[] getFieldValue(int fieldType) {
@@ -82,6 +80,23 @@ public class TableMapEventOptionalMetaData {
 		return optionalMetaData.get(SIGNEDNESS);
 	}
 
+	/**
+	 * The unsigned flags of numeric columns from SIGNEDNESS, a bitmap of numeric columns (1 is unsigned),
+	 * the most significant bit of each byte is the first.
+	 * @param numericColumnCount the number of numeric columns of table.
+	 * @return unsigned flags index by order of numeric columns, or null if table map has no signedness metadata.
+	 */
+	public boolean[] getNumericColumnUnsignedFlags(int numericColumnCount) {
+		byte[] raw = optionalMetaData.get(SIGNEDNESS);
+		if (raw == null)
+			return null;
+		boolean[] unsignedFlags = new boolean[numericColumnCount];
+		for (int i = 0; i < numericColumnCount && (i >>> 3) < raw.length; i++) {
+			unsignedFlags[i] = (raw[i >>> 3] & (0x80 >>> (i & 7))) != 0;
+		}
+		return unsignedFlags;
+	}
+
 	// CharacterSet Reference: SELECT id, collation_name FROM
 	// information_schema.collations ORDER BY id;
 	public byte[] getDefaultCharset() {
@@ -92,6 +107,41 @@ public class TableMapEventOptionalMetaData {
 		return optionalMetaData.get(COLUMN_CHARSET);
 	}
 
+	/**
+	 * The collation ids of character columns, from COLUMN_CHARSET, or DEFAULT_CHARSET with the 
+	 * (column index, collation id) pairs of columns not using the default.
+	 * @param characterColumnCount the number of character columns of table.
+	 * @return collation ids index by order of character columns, or null if table map has no charset metadata.
+	 */
+	public int[] getCharacterColumnCollationIds(int characterColumnCount) {
+		byte[] raw = optionalMetaData.get(COLUMN_CHARSET);
+		int[] collationIds = new int[characterColumnCount];
+		int pos = 0;
+		if (raw != null) {
+			for (int i = 0; i < characterColumnCount && pos < raw.length; i++) {
+				collationIds[i] = (int) ParserHelper.getPackedLong(raw, pos, order);
+				pos += ParserHelper.getPackedIntegerSize(raw[pos]);
+			}
+			return collationIds;
+		}
+		raw = optionalMetaData.get(DEFAULT_CHARSET);
+		if (raw != null) {
+			int defaultCollationId = (int) ParserHelper.getPackedLong(raw, pos, order);
+			pos += ParserHelper.getPackedIntegerSize(raw[pos]);
+			Arrays.fill(collationIds, defaultCollationId);
+			while (pos < raw.length) {
+				int index = (int) ParserHelper.getPackedLong(raw, pos, order);
+				pos += ParserHelper.getPackedIntegerSize(raw[pos]);
+				int collationId = (int) ParserHelper.getPackedLong(raw, pos, order);
+				pos += ParserHelper.getPackedIntegerSize(raw[pos]);
+				if (index < characterColumnCount)
+					collationIds[index] = collationId;
+			}
+			return collationIds;
+		}
+		return null;
+	}
+
 	public ArrayList<String> getColumnNames() {
 		ArrayList<String> columnNames = new ArrayList<String>();
 		byte[] rawColumnNames = optionalMetaData.get(COLUMN_NAME);
@@ -128,9 +178,8 @@ public class TableMapEventOptionalMetaData {
 		if (rawsimplePKCols != null) {
 			int pos = 0;
 			while ((rawsimplePKCols.length - pos) > 0) {
-				byte[] rawColNum = ParserHelper.getPackedInteger(rawsimplePKCols, pos);
-				pos += rawColNum.length;
-				int colNum = ParserHelper.getUnsignedInteger(rawColNum, order);
+				int colNum = (int) ParserHelper.getPackedLong(rawsimplePKCols, pos, order);
+				pos += ParserHelper.getPackedIntegerSize(rawsimplePKCols[pos]);
 				simplePKCols.add(colNum);
 			}
 		}
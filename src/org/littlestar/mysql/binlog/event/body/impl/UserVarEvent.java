@@ -16,6 +16,8 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
+import java.nio.ByteBuffer;
+
 import org.littlestar.mysql.binlog.event.body.helper.Collation;
 import org.littlestar.mysql.binlog.event.body.helper.Collations;
 import org.littlestar.mysql.binlog.event.header.EventHeader;
@@ -57,7 +59,7 @@ public class UserVarEvent extends EventBodyDefaultImpl {
 	private int isNull;
 	private int flags = 0x00;
 	
-	public UserVarEvent(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public UserVarEvent(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
 		long nameLength = getUnsignedLong(bodyData, pos, pos += NAME_LENGTH_LENGTH);
 		name = getString(bodyData, pos, pos += nameLength);
@@ -16,11 +16,10 @@
 
 package org.littlestar.mysql.binlog.event.body.impl;
 
-import java.nio.ByteOrder;
+import java.nio.ByteBuffer;
 
 import org.littlestar.mysql.binlog.event.header.EventHeader;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
-import org.littlestar.mysql.binlog.parser.ParserHelper;
 
 /**
  * XID_EVENT: Transaction ID for 2PC, written whenever a COMMIT is expected.
@@ -38,11 +37,9 @@ public class XidEventBody extends EventBodyDefaultImpl {
 	private long xid;
 	private int pos = 0;
 
-	public XidEventBody(final byte[] bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
+	public XidEventBody(final ByteBuffer bodyData, final EventHeader eventHeader, final BinlogFileMeta meta) {
 		super(bodyData, eventHeader, meta);
-		byte[] rawXid = getBytes( bodyData, pos, pos += XID_LENGTH);
-		
-		xid = ParserHelper.getUnsignedLong(rawXid, ByteOrder.BIG_ENDIAN);
+		xid = getUnsignedLong(bodyData, pos, pos += XID_LENGTH);
 	}
 
 	public long getXid() {
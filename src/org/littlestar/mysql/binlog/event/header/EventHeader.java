@@ -49,7 +49,7 @@ public class EventHeader {
     public static final int FLAGS_LENGTH            = 2;
     
     protected final int commonHeaderLength;
-    protected Date timestamp;
+    protected long timestamp; // milliseconds, the Date is created by getTimestamp().
     protected EventType eventType;
     protected long serverId;
     protected int eventSize;
@@ -60,12 +60,32 @@ public class EventHeader {
     	commonHeaderLength = length;
     }
     
+    /**
+     * Copy of the header, the parser reuses one header for the events passed to BinlogEventListener.
+     */
+    public EventHeader(EventHeader header) {
+    	commonHeaderLength = header.commonHeaderLength;
+    	timestamp = header.timestamp;
+    	eventType = header.eventType;
+    	serverId = header.serverId;
+    	eventSize = header.eventSize;
+    	nextPosition = header.nextPosition;
+    	flags = header.flags;
+    }
+    
 	public Date getTimestamp() {
+		return new Date(timestamp);
+	}
+	
+	/**
+	 * @return the event timestamp in milliseconds, without creating a Date.
+	 */
+	public long getTimestampMillis() {
 		return timestamp;
 	}
 	
 	public void setTimestamp(long timestamp) {
-		this.timestamp = new Date(timestamp);
+		this.timestamp = timestamp;
 	}
 
 	public EventType getEventType() {
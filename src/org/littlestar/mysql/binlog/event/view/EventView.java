@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.event.view;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * A flyweight view of event body: the parser wraps each event of the type into the same view and 
+ * passes it to BinlogEventListener, the fields are read from the event body when they are used.
+ * 
+ * The view (and the values read from it) is only valid in the listener callback, the event body 
+ * is a slice of the mapped binlog file and the view is reused by the next event. Use the EventBody 
+ * of BinlogParser.nextEvent() to keep the events.
+ */
+public abstract class EventView {
+	protected final BinlogFileMeta meta;
+	protected final ByteOrder order;
+	protected EventHeader eventHeader;
+	protected ByteBuffer bodyData;
+	
+	protected EventView(final BinlogFileMeta meta) {
+		this.meta = meta;
+		order = meta.getByteOrder();
+	}
+	
+	/**
+	 * Wrap the event body of the event header, called by the parser.
+	 */
+	public void wrap(final EventHeader eventHeader, final ByteBuffer bodyData) {
+		this.eventHeader = eventHeader;
+		this.bodyData = bodyData.order(order);
+		parse();
+	}
+	
+	// read the post-header fields which are needed to read the others.
+	protected abstract void parse();
+	
+	public EventHeader getEventHeader() {
+		return eventHeader;
+	}
+	
+	public EventType getEventType() {
+		return eventHeader.getEventType();
+	}
+	
+	/**
+	 * @return the event body (including checksum), indexed from 0 to event body length.
+	 */
+	public ByteBuffer getBodyData() {
+		return bodyData;
+	}
+	
+	/**
+	 * @return length of the event body without checksum.
+	 */
+	public int getBodyDataLength() {
+		return eventHeader.getEventBodyLength() - meta.getChecksumLength();
+	}
+	
+	protected int getUnsignedInteger(int from, int length) {
+		return ParserHelper.getUnsignedInteger(bodyData, from, length, order);
+	}
+	
+	protected long getUnsignedLong(int from, int length) {
+		return ParserHelper.getUnsignedLong(bodyData, from, length, order);
+	}
+	
+	protected long getLong(int from, int length) {
+		return ParserHelper.getLong(bodyData, from, length, order);
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.event.view;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.impl.GtidLogEventBody;
+import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * Flyweight view of GTID_LOG_EVENT and ANONYMOUS_GTID_LOG_EVENT, see GtidLogEventBody for the layout.
+ */
+public class GtidEventView extends EventView {
+	private static final int SID_POS = GtidLogEventBody.ENCODED_FLAG_LENGTH;
+	private static final int GNO_POS = SID_POS + GtidLogEventBody.ENCODED_SID_LENGTH;
+	private static final int LAST_COMMITTED_POS = GNO_POS + GtidLogEventBody.ENCODED_GNO_LENGTH
+			+ GtidLogEventBody.LT_TYPE_LENGTH;
+	private static final int SEQUENCE_NUMBER_POS = LAST_COMMITTED_POS + GtidLogEventBody.LAST_COMMITTED_LENGTH;
+	
+	public GtidEventView(final BinlogFileMeta meta) {
+		super(meta);
+	}
+	
+	@Override
+	protected void parse() {
+		// fields are at fixed positions.
+	}
+	
+	public boolean isAnonymous() {
+		return getEventType() == EventType.ANONYMOUS_GTID_LOG_EVENT;
+	}
+	
+	public int getFlag() {
+		return getUnsignedInteger(0, GtidLogEventBody.ENCODED_FLAG_LENGTH);
+	}
+	
+	/**
+	 * Compare the server UUID with the 16 bytes encoded SID, without creating the UUID string.
+	 */
+	public boolean isSID(byte[] sid) {
+		for (int i = 0; i < GtidLogEventBody.ENCODED_SID_LENGTH; i++) {
+			if (bodyData.get(SID_POS + i) != sid[i])
+				return false;
+		}
+		return true;
+	}
+	
+	public String getUUID() {
+		byte[] sid = ParserHelper.getBytes(bodyData, SID_POS, GNO_POS);
+		StringBuilder uuid = new StringBuilder(ParserHelper.getHexString(sid).toLowerCase());
+		uuid.insert(8, '-');
+		uuid.insert(13, '-');
+		uuid.insert(18, '-');
+		uuid.insert(23, '-');
+		return uuid.toString();
+	}
+	
+	public long getTransactionId() {
+		return getLong(GNO_POS, GtidLogEventBody.ENCODED_GNO_LENGTH);
+	}
+	
+	public String getGtid() {
+		return getUUID() + ":" + getTransactionId();
+	}
+	
+	public long getLastCommitted() {
+		if (getBodyDataLength() < SEQUENCE_NUMBER_POS)
+			return 0L;
+		return getUnsignedLong(LAST_COMMITTED_POS, GtidLogEventBody.LAST_COMMITTED_LENGTH);
+	}
+	
+	public long getSequenceNumber() {
+		if (getBodyDataLength() < SEQUENCE_NUMBER_POS + GtidLogEventBody.SEQUENCE_NUMBER_LENGTH)
+			return 0L;
+		return getUnsignedLong(SEQUENCE_NUMBER_POS, GtidLogEventBody.SEQUENCE_NUMBER_LENGTH);
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.event.view;
+
+import org.littlestar.mysql.binlog.event.body.impl.QueryEventBody;
+import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * Flyweight view of QUERY_EVENT, see QueryEventBody for the layout. The schema and query strings
+ * are decoded when getSchema()/getQuery() called.
+ */
+public class QueryEventView extends EventView {
+	private long threadId;
+	private long executionTime;
+	private int schemaLength;
+	private int errorCode;
+	private int schemaPos;
+	
+	public QueryEventView(final BinlogFileMeta meta) {
+		super(meta);
+	}
+	
+	@Override
+	protected void parse() {
+		int pos = 0;
+		threadId = getUnsignedLong(pos, QueryEventBody.SLAVE_PROXY_ID_LENGTH);
+		pos += QueryEventBody.SLAVE_PROXY_ID_LENGTH;
+		executionTime = getUnsignedLong(pos, QueryEventBody.EXECUTION_TIME_LENGTH);
+		pos += QueryEventBody.EXECUTION_TIME_LENGTH;
+		schemaLength = getUnsignedInteger(pos, QueryEventBody.SCHEMA_LENGTH_LENGTH);
+		pos += QueryEventBody.SCHEMA_LENGTH_LENGTH;
+		errorCode = getUnsignedInteger(pos, QueryEventBody.ERROR_CODE_LENGTH);
+		pos += QueryEventBody.ERROR_CODE_LENGTH;
+		int statusVarsLength = 0;
+		if (meta.getBinlogVersion() >= 4) {
+			statusVarsLength = getUnsignedInteger(pos, QueryEventBody.STATUS_VARS_LENGTH_LENGTH);
+			pos += QueryEventBody.STATUS_VARS_LENGTH_LENGTH;
+		}
+		schemaPos = pos + statusVarsLength;
+	}
+	
+	public long getThreadId() {
+		return threadId;
+	}
+	
+	public long getExecutionTime() {
+		return executionTime;
+	}
+	
+	public int getErrorCode() {
+		return errorCode;
+	}
+	
+	public String getSchema() {
+		return ParserHelper.getString(ParserHelper.getBytes(bodyData, schemaPos, schemaPos + schemaLength)).trim();
+	}
+	
+	public String getQuery() {
+		// schema is followed by [00].
+		int queryPos = schemaPos + schemaLength + 1;
+		return ParserHelper.getString(ParserHelper.getNulTerminatedString(bodyData, queryPos, getBodyDataLength()));
+	}
+	
+	/**
+	 * @return true if the query is "BEGIN", without decoding the query string.
+	 */
+	public boolean isBegin() {
+		int queryPos = schemaPos + schemaLength + 1;
+		return getBodyDataLength() - queryPos == 5 && bodyData.get(queryPos) == 'B' && bodyData.get(queryPos + 1) == 'E'
+				&& bodyData.get(queryPos + 2) == 'G' && bodyData.get(queryPos + 3) == 'I' && bodyData.get(queryPos + 4) == 'N';
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.event.view;
+
+import java.util.BitSet;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.helper.RowDecoderPlan;
+import org.littlestar.mysql.binlog.event.body.helper.RowImage;
+import org.littlestar.mysql.binlog.event.body.impl.RowsEventBody;
+import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+
+/**
+ * Flyweight view of rows events, see RowsEventBody for the layout. The rows are decoded one by one 
+ * with nextRow() into the row-images of the view, which are reused by the next row:
+ * 
+ *   while (rows.nextRow()) {
+ *       RowImage before = rows.getRowImage();
+ *       RowImage after = rows.getAfterImage(); // UPDATE_ROWS_EVENT only
+ *   }
+ * 
+ * String values of the row-images are byte ranges of the event body, so they are only valid in 
+ * the listener callback too.
+ */
+public class RowsEventView extends EventView {
+	private long tableId;
+	private int flags;
+	private int columnCount;
+	private final BitSet presentBitSet = new BitSet();
+	private int presentColumns;
+	private final BitSet afterPresentBitSet = new BitSet();
+	private int afterPresentColumns;
+	private final BitSet nullBitSet = new BitSet();
+	private boolean isUpdateRowsEvent;
+	private TableMapEventBody tableMapEventBody;
+	private RowDecoderPlan rowDecoderPlan;
+	private int nextPos;
+	private final RowImage rowImage = new RowImage(0L);
+	private final RowImage afterImage = new RowImage(0L);
+	
+	public RowsEventView(final BinlogFileMeta meta) {
+		super(meta);
+	}
+	
+	@Override
+	protected void parse() {
+		int pos = 0;
+		int tableIdLength = meta.getPostHeaderLength(EventType.TABLE_MAP_EVENT) == 6 ? 4 : 6;
+		tableId = getUnsignedLong(pos, tableIdLength);
+		pos += tableIdLength;
+		flags = getUnsignedInteger(pos, RowsEventBody.FLAGS_LENGTH);
+		pos += RowsEventBody.FLAGS_LENGTH;
+		if (meta.getRowEventVersion() == 2) {
+			// extra-data-length includes the 2 bytes of itself.
+			int extraDataLength = getUnsignedInteger(pos, RowsEventBody.EXTRA_DATA_LENGTH);
+			pos += Math.max(extraDataLength, RowsEventBody.EXTRA_DATA_LENGTH);
+		}
+		columnCount = (int) ParserHelper.getPackedLong(bodyData, pos, order);
+		pos += ParserHelper.getPackedIntegerSize(bodyData.get(pos));
+		int presentBitmapLength = (columnCount + 7) / 8;
+		presentColumns = fillBitSet(presentBitSet, pos, presentBitmapLength, columnCount);
+		pos += presentBitmapLength;
+		EventType eventType = getEventType();
+		isUpdateRowsEvent = eventType == EventType.UPDATE_ROWS_EVENT || eventType == EventType.UPDATE_ROWS_EVENT_V1;
+		if (isUpdateRowsEvent) {
+			afterPresentColumns = fillBitSet(afterPresentBitSet, pos, presentBitmapLength, columnCount);
+			pos += presentBitmapLength;
+		}
+		nextPos = pos;
+		tableMapEventBody = meta.getTableMapEventBody(tableId);
+		rowDecoderPlan = tableMapEventBody == null ? null : meta.getRowDecoderPlan(tableMapEventBody);
+	}
+	
+	public long getTableId() {
+		return tableId;
+	}
+	
+	public int getFlags() {
+		return flags;
+	}
+	
+	public int getColumnCount() {
+		return columnCount;
+	}
+	
+	/**
+	 * @return the table map of the rows event, null if the table map is not read.
+	 */
+	public TableMapEventBody getTableMapEventBody() {
+		return tableMapEventBody;
+	}
+	
+	public boolean isUpdateRowsEvent() {
+		return isUpdateRowsEvent;
+	}
+	
+	public BitSet getPresentColumns() {
+		return presentBitSet;
+	}
+	
+	/**
+	 * @return the columns present in the after-images of UPDATE_ROWS_EVENT, null for other events.
+	 */
+	public BitSet getAfterPresentColumns() {
+		return isUpdateRowsEvent ? afterPresentBitSet : null;
+	}
+	
+	/**
+	 * Decode the next row (the before-image and after-image of UPDATE_ROWS_EVENT).
+	 * @return false if there is no more rows or the table map is not read.
+	 */
+	public boolean nextRow() {
+		if (rowDecoderPlan == null)
+			return false;
+		if (!decodeRowImage(rowImage, presentBitSet, presentColumns))
+			return false;
+		if (isUpdateRowsEvent) {
+			return decodeRowImage(afterImage, afterPresentBitSet, afterPresentColumns);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the row-image of current row, it's the before-image of UPDATE_ROWS_EVENT.
+	 */
+	public RowImage getRowImage() {
+		return rowImage;
+	}
+	
+	/**
+	 * @return the after-image of UPDATE_ROWS_EVENT, null for other events.
+	 */
+	public RowImage getAfterImage() {
+		return isUpdateRowsEvent ? afterImage : null;
+	}
+	
+	private boolean decodeRowImage(final RowImage image, final BitSet present, final int presentCount) {
+		int nullBitmapLength = (presentCount + 7) / 8;
+		int checksumLength = meta.getChecksumLength();
+		int remainBytes = eventHeader.getEventBodyLength() - nextPos;
+		// a row-image should be bigger than checksum-length + null-bitmap-length;
+		if (remainBytes <= checksumLength || remainBytes < (checksumLength + nullBitmapLength))
+			return false;
+		image.reset(tableId, rowDecoderPlan.getColumnCount());
+		image.setStartPosition(nextPos);
+		fillBitSet(nullBitSet, nextPos, nullBitmapLength, presentCount);
+		nextPos = rowDecoderPlan.decode(bodyData, nextPos + nullBitmapLength, present, nullBitSet, image);
+		image.setEndPosition(nextPos);
+		return true;
+	}
+	
+	// read the bitmap into the reused bit set, return the cardinality.
+	private int fillBitSet(final BitSet bitSet, final int from, final int length, final int bits) {
+		bitSet.clear();
+		int count = 0;
+		for (int i = 0; i < length; i++) {
+			int b = bodyData.get(from + i) & 0xff;
+			for (int j = 0; j < 8 && (i << 3) + j < bits; j++) {
+				if ((b & (1 << j)) != 0) {
+					bitSet.set((i << 3) + j);
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
@@ -16,14 +16,18 @@
 
 package org.littlestar.mysql.binlog.miner;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.ByteOrder;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,21 +38,35 @@ import org.littlestar.mysql.binlog.event.body.impl.QueryEventBody;
 import org.littlestar.mysql.binlog.event.body.impl.RowsEventBody;
 import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
 import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.parser.BinlogFileIndex;
+import org.littlestar.mysql.binlog.parser.BinlogFileMappedByteBuffer;
+import org.littlestar.mysql.binlog.parser.BinlogFileMappingPool;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 import org.littlestar.mysql.binlog.parser.BinlogParser;
 import org.littlestar.mysql.binlog.parser.BinlogParserBuilder;
-import org.littlestar.mysql.binlog.parser.ParserHelper;
+import org.littlestar.mysql.binlog.parser.BinlogTableFilter;
 import org.littlestar.mysql.binlog.sql.DatabaseReference;
 import org.littlestar.mysql.binlog.sql.RowsEvent2SQL;
 import org.littlestar.mysql.binlog.sql.StatmentPair;
 
 public class BinlogMiner extends Thread {
-	private static final int batchSize = 600;
 	private static final Logger logger = Logger.getLogger(BinlogMiner.class.getName());
 	
 	private final BinlogParser parser;
 	private final BinlogFileMeta binlogMeta;
 	private final String blogFile ;
+	private final ByteOrder byteOrder;
+	private final String charset;
+	private final BinlogTableFilter tableFilter;
+	private final BinlogFileMappingPool mappingPool;
+	private final HashSet<EventType> eventFilter;
+	
+	private ForkJoinPool decodePool = null;
+	private long chunkSize = 0L;
+	private volatile long chunkedPosition = -1L; // the end of the chunks written to output, -1 if not chunked.
+	private int pipelineWorkers = 0;
+	private int pipelineCapacity = 0;
+	private volatile MinerPipeline pipeline = null;
 	
 	private Connection outputConnection = null;
 	private String outputTable = null;
@@ -58,10 +76,16 @@ public class BinlogMiner extends Thread {
 	private DatabaseReference dbRef = null;
 	
 	private PrintStream outputStream = null;
+	private MinerOutput output = null;
 	
-	private BinlogMiner(String blogFile, ByteOrder byteOrder, String charset) throws Throwable {
+	private BinlogMiner(String blogFile, ByteOrder byteOrder, String charset, BinlogTableFilter tableFilter,
+			BinlogFileMappingPool mappingPool) throws Throwable {
 		this.blogFile = blogFile;
-		HashSet<EventType> eventFilter = new HashSet<EventType>();
+		this.byteOrder = byteOrder;
+		this.charset = charset;
+		this.tableFilter = tableFilter;
+		this.mappingPool = mappingPool;
+		eventFilter = new HashSet<EventType>();
 		eventFilter.add(EventType.TABLE_MAP_EVENT);
 		eventFilter.add(EventType.QUERY_EVENT);
 		eventFilter.add(EventType.WRITE_ROWS_EVENT_V1);
@@ -70,21 +94,50 @@ public class BinlogMiner extends Thread {
 		eventFilter.add(EventType.WRITE_ROWS_EVENT);
 		eventFilter.add(EventType.UPDATE_ROWS_EVENT);
 		eventFilter.add(EventType.DELETE_ROWS_EVENT);
-		parser = BinlogParserBuilder.newBuilder(blogFile)
+		parser = newParser(BinlogFileMappedByteBuffer.DEFAULT_MAPPING_WINDOW_SIZE);
+		binlogMeta = parser.getBinlogFileMeta();
+	}
+	
+	/**
+	 * @param mappingWindowSize the chunk parsers map the file by windows of chunk size, so they only
+	 *     hold (and reserve in the mapping pool) about their chunks.
+	 */
+	private BinlogParser newParser(long mappingWindowSize) throws Throwable {
+		return BinlogParserBuilder.newBuilder(blogFile)
 				.withByteOrder(byteOrder)
 				.withEventFilter(eventFilter)
 				.decodeString(false)
+				.zeroCopy(true) // each event is consumed before the parser leaves its window.
+				.lazyDecodeRows(true) // decoded by RowsEvent2SQL, in the render workers if pipelined.
 				.withCharSet(charset)
+				.withTableFilter(tableFilter)
+				.withMappingWindowSize(mappingWindowSize)
+				.withMappingPool(mappingPool)
 				.build();
-		binlogMeta = parser.getBinlogFileMeta();
 	}
 	
 	public static BinlogMiner newMiner(String blogFile, ByteOrder byteOrder) throws Throwable {
-		return new BinlogMiner(blogFile, byteOrder, null);
+		return new BinlogMiner(blogFile, byteOrder, null, null, null);
 	}
 	
 	public static BinlogMiner newMiner(String blogFile, ByteOrder byteOrder, String charset) throws Throwable {
-		return new BinlogMiner(blogFile, byteOrder, charset);
+		return new BinlogMiner(blogFile, byteOrder, charset, null, null);
+	}
+	
+	/**
+	 * @param tableFilter only mining the tables accepted by the filter, null for all tables. 
+	 */
+	public static BinlogMiner newMiner(String blogFile, ByteOrder byteOrder, String charset,
+			BinlogTableFilter tableFilter) throws Throwable {
+		return new BinlogMiner(blogFile, byteOrder, charset, tableFilter, null);
+	}
+	
+	/**
+	 * @param mappingPool the mapping pool shared by the miners running in parallel, null for not pooled.
+	 */
+	public static BinlogMiner newMiner(String blogFile, ByteOrder byteOrder, String charset,
+			BinlogTableFilter tableFilter, BinlogFileMappingPool mappingPool) throws Throwable {
+		return new BinlogMiner(blogFile, byteOrder, charset, tableFilter, mappingPool);
 	}
 	
 	public BinlogMiner withOutputConnection(final Connection connection) {
@@ -116,6 +169,65 @@ public class BinlogMiner extends Thread {
 		return this;
 	}
 	
+	/**
+	 * Write the statements to the output instead of the output table or stream, the output is closed 
+	 * when the mining is finished.
+	 */
+	public BinlogMiner withOutput(MinerOutput output) {
+		this.output = output;
+		return this;
+	}
+	
+	/**
+	 * Decode the binlog file in chunks on the pool. The file is split at transaction boundaries every 
+	 * chunk size bytes (by a BinlogFileIndex, built with chunk size as checkpoint interval), each chunk 
+	 * is decoded by its own parser seeded with the table maps active at the chunk start, and the chunks
+	 * are written to the output in file order.
+	 * 
+	 * @param decodePool the pool to decode chunks, null for decode in the miner thread.
+	 */
+	public BinlogMiner withChunkDecoding(ForkJoinPool decodePool, long chunkSize) {
+		if (decodePool != null && chunkSize <= 0) {
+			throw new IllegalArgumentException("chunk size must be greater than 0.");
+		}
+		this.decodePool = decodePool;
+		this.chunkSize = chunkSize;
+		return this;
+	}
+	
+	/**
+	 * Mining in stages joined by bounded rings: a reader thread, n render workers (decoding rows and 
+	 * rendering statements) and the sink (miner thread, writing output in order of events), so the 
+	 * parsing and output are overlapped. Ignored if decoded in chunks (withChunkDecoding).
+	 * 
+	 * @param workers the number of render workers, 0 for not pipelined.
+	 * @param capacity the capacity of rings, the max events in flight.
+	 */
+	public BinlogMiner withPipeline(int workers, int capacity) {
+		if (workers > 0 && capacity <= 0) {
+			throw new IllegalArgumentException("pipeline capacity must be greater than 0.");
+		}
+		this.pipelineWorkers = workers;
+		this.pipelineCapacity = capacity;
+		return this;
+	}
+	
+	/**
+	 * @return the events waiting for render workers, 0 if not pipelined.
+	 */
+	public long getDecodeQueueDepth() {
+		MinerPipeline pipeline = this.pipeline;
+		return pipeline == null ? 0L : pipeline.getDecodeQueueDepth();
+	}
+	
+	/**
+	 * @return the records waiting for writing to output, 0 if not pipelined.
+	 */
+	public long getSinkQueueDepth() {
+		MinerPipeline pipeline = this.pipeline;
+		return pipeline == null ? 0L : pipeline.getSinkQueueDepth();
+	}
+	
 	public String getBinlogFileName() {
 		return blogFile;
 	}
@@ -125,7 +237,8 @@ public class BinlogMiner extends Thread {
 	}
 	
 	public long getProcessedBytes() {
-		return parser.getPosition();
+		long position = chunkedPosition;
+		return position < 0 ? parser.getPosition() : position;
 	}
 	
 	@Override
@@ -133,86 +246,182 @@ public class BinlogMiner extends Thread {
 		if (referenceConnection != null) {
 			dbRef = new DatabaseReference(referenceConnection, referenceTableName);
 		}
-		PreparedStatement stmt = null;
-		int num = 0;
-		while (parser.hasEvent()) {
-			try {
-				BinlogEvent event = parser.nextEvent();
-				EventHeader header = event.getHeader();
-				EventBody body = event.getBody();
-				EventType eventType = header.getEventType();
-				Timestamp eventTimestamp = new Timestamp(header.getTimestamp().getTime());
-				String schemaName = "";
-				String tableName = "";
-				long startPos = header.getStartPosition();
-				long endPos = header.getNextPosition();
-				ArrayList<StatmentPair> stmtPairArray = new ArrayList<StatmentPair>();
-				if (body instanceof RowsEventBody) {
-					RowsEventBody rowsEventBody = (RowsEventBody) body;
-					long tableId = rowsEventBody.getTableId();
-					TableMapEventBody tableMapEventBody = binlogMeta.getTableMapEventBody(tableId);
-					schemaName = tableMapEventBody.getSchemaName();
-					tableName = tableMapEventBody.getTableName();
-					ArrayList<StatmentPair> pairArray = RowsEvent2SQL.getRowsEventStatements(tableMapEventBody, dbRef,
-							rowsEventBody, binlogMeta.getDefaultCharsetName());
-					stmtPairArray.addAll(pairArray);
-				} else if (body instanceof QueryEventBody) {
-					QueryEventBody queryEventBody = (QueryEventBody) body;
-					schemaName = queryEventBody.getSchema();
-					tableName = "";
-					String redoStmt = queryEventBody.getQuery();
-					String undoStmt = "";
-					StatmentPair pair = new StatmentPair();
-					pair.setRedoStatement(redoStmt);
-					pair.setUndoStatement(undoStmt);
-					stmtPairArray.add(pair);
+		MinerOutput output = this.output;
+		if (output == null) {
+			if (outputTable != null & outputConnection != null) {
+				output = new MinerTableOutput(outputConnection, outputTable);
+			} else {
+				output = new MinerStreamOutput(outputStream == null ? System.out : outputStream);
+			}
+		}
+		if (decodePool != null) {
+			runChunked(output);
+		} else if (pipelineWorkers > 0) {
+			pipeline = new MinerPipeline(parser, dbRef, pipelineWorkers, pipelineCapacity);
+			pipeline.run(output);
+		} else {
+			BinlogEvent event = new BinlogEvent(); // reused by each event.
+			while (parser.hasEvent()) {
+				try {
+					parser.nextEvent(event);
+					mineEvent(event, binlogMeta, dbRef, output);
+				} catch (Throwable e) {
+					logger.log(Level.WARNING, "", e);
 				}
-				
-				if (outputTable != null & outputConnection != null) {
-					if(stmt == null) {
-						final String outputStmt = "insert into "+outputTable+" (event_timestamp,"
-								+ "event_type, table_schema, table_name, start_pos, "
-								+ "end_pos, undo_stmt, redo_stmt) values(?, ?, ?, ?, ?, ?, ?, ?)";
-						stmt = outputConnection.prepareStatement(outputStmt);
-					}
-					for (StatmentPair stmtPair : stmtPairArray) {
-						stmt.setTimestamp(1, eventTimestamp);
-						stmt.setString(2, eventType.toString());
-						stmt.setString(3, schemaName);
-						stmt.setString(4, tableName);
-						stmt.setLong(5, startPos);
-						stmt.setLong(6, endPos);
-						stmt.setString(7, stmtPair.getUndoStatement());
-						stmt.setString(8, stmtPair.getRedoStatement());
-						stmt.addBatch();
-						num++;
-						if (num % batchSize == 0) {
-							stmt.executeBatch();
-						}
-					}
-				} else {
-					if (outputStream == null) {
-						outputStream = System.out;
-					}
-					if ((body instanceof RowsEventBody) | (body instanceof QueryEventBody)) {
-						outputStream.println(ParserHelper.getString(eventTimestamp) + " " + eventType.toString() + " "
-								+ schemaName + "." + tableName + " start-pos: " + startPos + " end-pos: " + endPos);
-						for (StatmentPair stmtPair : stmtPairArray) {
-							outputStream.println("REDO# " + stmtPair.getRedoStatement());
-							outputStream.println("UNDO# " + stmtPair.getUndoStatement());
-						}
-					}
+			}
+		}
+		try {
+			output.close();
+		} catch (Throwable e) {
+			logger.log(Level.WARNING, "", e);
+		}
+		try {
+			parser.close();
+		} catch (Throwable e) {
+			logger.log(Level.WARNING, "", e);
+		}
+	}
+	
+	private static void mineEvent(BinlogEvent event, BinlogFileMeta meta, DatabaseReference dbRef,
+			MinerOutput output) throws Throwable {
+		MinerRecord record = render(event, meta, dbRef);
+		if (record != null) {
+			record.writeTo(output);
+		}
+	}
+	
+	/**
+	 * @return the statements of rows event or query event, null for other events.
+	 */
+	static MinerRecord render(BinlogEvent event, BinlogFileMeta meta, DatabaseReference dbRef) {
+		EventHeader header = event.getHeader();
+		EventBody body = event.getBody();
+		EventType eventType = header.getEventType();
+		Timestamp eventTimestamp = new Timestamp(header.getTimestampMillis());
+		String schemaName = "";
+		String tableName = "";
+		long startPos = header.getStartPosition();
+		long endPos = header.getNextPosition();
+		ArrayList<StatmentPair> stmtPairArray = new ArrayList<StatmentPair>();
+		if (body instanceof RowsEventBody) {
+			RowsEventBody rowsEventBody = (RowsEventBody) body;
+			// the table map captured when the event is read, the current one could be replaced if pipelined.
+			TableMapEventBody tableMapEventBody = rowsEventBody.getTableMapEventBody();
+			schemaName = tableMapEventBody.getSchemaName();
+			tableName = tableMapEventBody.getTableName();
+			ArrayList<StatmentPair> pairArray = RowsEvent2SQL.getRowsEventStatements(tableMapEventBody, dbRef,
+					rowsEventBody, meta.getDefaultCharsetName());
+			stmtPairArray.addAll(pairArray);
+		} else if (body instanceof QueryEventBody) {
+			QueryEventBody queryEventBody = (QueryEventBody) body;
+			schemaName = queryEventBody.getSchema();
+			tableName = "";
+			String redoStmt = queryEventBody.getQuery();
+			String undoStmt = "";
+			StatmentPair pair = new StatmentPair();
+			pair.setRedoStatement(redoStmt);
+			pair.setUndoStatement(undoStmt);
+			stmtPairArray.add(pair);
+		}
+		
+		if ((body instanceof RowsEventBody) | (body instanceof QueryEventBody)) {
+			return new MinerRecord(eventTimestamp, eventType, schemaName, tableName, startPos, endPos, stmtPairArray);
+		}
+		return null;
+	}
+	
+	private void runChunked(MinerOutput output) {
+		BinlogFileIndex chunks;
+		try {
+			// the parsers of chunks may wait for the mapping of miner parser if they share a mapping pool.
+			parser.close();
+			chunks = BinlogFileIndex.build(blogFile, byteOrder, chunkSize);
+		} catch (Throwable e) {
+			logger.log(Level.SEVERE, "Split binlog '" + blogFile + "' failed.", e);
+			return;
+		}
+		chunkedPosition = 0L;
+		ArrayList<Future<MinerSpoolOutput>> futures = new ArrayList<Future<MinerSpoolOutput>>();
+		for (int i = 0; i < chunks.size(); i++) {
+			BinlogFileIndex.Checkpoint start = chunks.getCheckpoint(i);
+			long end = i + 1 < chunks.size() ? chunks.getCheckpoint(i + 1).getPosition() : Long.MAX_VALUE;
+			futures.add(decodePool.submit(new ChunkTask(start, end, i)));
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			MinerSpoolOutput spool = null;
+			try {
+				spool = futures.get(i).get();
+				spool.replay(output);
+			} catch (InterruptedException e) {
+				logger.log(Level.SEVERE, "Interrupted, ending ...", e);
+				for (int j = i; j < futures.size(); j++) {
+					futures.get(j).cancel(true);
 				}
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				logger.log(Level.WARNING, "Decode chunk " + i + " of binlog '" + blogFile + "' failed.", e.getCause());
 			} catch (Throwable e) {
 				logger.log(Level.WARNING, "", e);
+			} finally {
+				if (spool != null) {
+					spool.delete();
+				}
 			}
+			chunkedPosition = i + 1 < chunks.size() ? chunks.getCheckpoint(i + 1).getPosition() : binlogMeta.getFileSize();
 		}
-		try {
-			if (stmt != null) {
-				stmt.executeBatch();
-				stmt.close();
+	}
+	
+	/**
+	 * Decode the events of [start, end) to a spool.
+	 */
+	private class ChunkTask implements Callable<MinerSpoolOutput> {
+		private final BinlogFileIndex.Checkpoint start;
+		private final long end;
+		private final int chunk;
+		
+		ChunkTask(BinlogFileIndex.Checkpoint start, long end, int chunk) {
+			this.start = start;
+			this.end = end;
+			this.chunk = chunk;
+		}
+		
+		@Override
+		public MinerSpoolOutput call() throws Exception {
+			BinlogParser chunkParser;
+			try {
+				chunkParser = newParser(Math.min(chunkSize, Integer.MAX_VALUE));
+			} catch (Throwable e) {
+				throw new IOException("Open binlog '" + blogFile + "' failed.", e);
+			}
+			MinerSpoolOutput spool = null;
+			try {
+				try {
+					chunkParser.seek(start);
+				} catch (Throwable e) {
+					throw new IOException("Seek binlog '" + blogFile + "' to chunk " + chunk + " failed.", e);
+				}
+				spool = MinerSpoolOutput.newSpool(new File(blogFile).getName() + "." + chunk + ".");
+				BinlogFileMeta chunkMeta = chunkParser.getBinlogFileMeta();
+				BinlogEvent event = new BinlogEvent();
+				while (chunkParser.hasEvent() && chunkParser.getPosition() < end) {
+					try {
+						chunkParser.nextEvent(event);
+						mineEvent(event, chunkMeta, dbRef, spool);
+					} catch (Throwable e) {
+						logger.log(Level.WARNING, "", e);
+					}
+				}
+				spool.close();
+				return spool;
+			} catch (Exception e) {
+				if (spool != null) {
+					spool.delete();
+				}
+				throw e;
+			} finally {
+				chunkParser.close();
 			}
-		} catch (Throwable e) {
 		}
 	}
 }
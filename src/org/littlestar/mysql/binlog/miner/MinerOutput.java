@@ -0,0 +1,32 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.io.Closeable;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.sql.StatmentPair;
+
+/**
+ * The output of BinlogMiner, the redo/undo statements of an event are written in one call. The 
+ * output is closed by the miner when the mining is finished.
+ */
+public interface MinerOutput extends Closeable {
+	public void write(Timestamp eventTimestamp, EventType eventType, String schemaName, String tableName,
+			long startPos, long endPos, List<StatmentPair> stmtPairs) throws Exception;
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.littlestar.mysql.binlog.event.BinlogEvent;
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.EventBody;
+import org.littlestar.mysql.binlog.event.body.impl.QueryEventBody;
+import org.littlestar.mysql.binlog.event.body.impl.RowsEventBody;
+import org.littlestar.mysql.binlog.parser.BinlogFileMappedByteBuffer;
+import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
+import org.littlestar.mysql.binlog.parser.BinlogParser;
+import org.littlestar.mysql.binlog.parser.impl.BinlogParser4;
+import org.littlestar.mysql.binlog.sql.DatabaseReference;
+
+/**
+ * The staged mining of a binlog file:
+ * 
+ *   reader (1 thread)  --decode ring-->  render workers (n threads)  --sink ring-->  sink (caller thread)
+ * 
+ * - reader: reads the events from the mapped file, the rows events and query events are numbered
+ *   and put to the decode ring, the table maps are kept by the parser as usual;
+ * - render workers: decode the row-images (the parser decodes rows lazily) and render the redo/undo
+ *   statements, the records are put to the sink ring at the sequence of their events;
+ * - sink: takes the records in sequence and writes them to the output, so the output is in order 
+ *   of events, and the parsing is not stalled by output (i.e. JDBC batches) until the rings are full.
+ *   
+ * The rings are bounded, a full ring blocks its producers (backpressure). The queue depths of
+ * stages are available by getDecodeQueueDepth() and getSinkQueueDepth().
+ * 
+ * The event bodies are slices of the parser's mapping window (zero-copy), so before the parser
+ * leaves a window, the reader waits until the events read from it are rendered.
+ */
+class MinerPipeline {
+	private static final Logger logger = Logger.getLogger(MinerPipeline.class.getName());
+	private static final MinerRecord NO_RECORD = new MinerRecord(null, null, null, null, 0L, 0L, null);
+	
+	private final BinlogParser parser;
+	private final BinlogFileMeta binlogMeta;
+	private final DatabaseReference dbRef;
+	private final int workers;
+	private final MinerRing<BinlogEvent> decodeRing;
+	private final MinerRing<MinerRecord> sinkRing;
+	private final AtomicLong claimed = new AtomicLong(0L);
+	private final AtomicLong rendered = new AtomicLong(0L);
+	private long read = 0L; // the events put to the decode ring, by the reader.
+	
+	MinerPipeline(BinlogParser parser, DatabaseReference dbRef, int workers, int capacity) {
+		this.parser = parser;
+		this.binlogMeta = parser.getBinlogFileMeta();
+		this.dbRef = dbRef;
+		this.workers = workers;
+		decodeRing = new MinerRing<BinlogEvent>(capacity);
+		sinkRing = new MinerRing<MinerRecord>(capacity);
+	}
+	
+	long getDecodeQueueDepth() {
+		return decodeRing.depth();
+	}
+	
+	long getSinkQueueDepth() {
+		return sinkRing.depth();
+	}
+	
+	/**
+	 * Run the pipeline until all events are written to output, the sink runs in the caller thread.
+	 */
+	void run(MinerOutput output) {
+		String name = Thread.currentThread().getName();
+		Thread[] threads = new Thread[workers + 1];
+		threads[0] = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				read();
+			}
+		}, name + "-reader");
+		for (int i = 1; i <= workers; i++) {
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					render();
+				}
+			}, name + "-render-" + i);
+		}
+		for (Thread thread : threads) {
+			thread.setDaemon(true);
+			thread.start();
+		}
+		try {
+			for (long seq = 0;; seq++) {
+				MinerRecord record = sinkRing.take(seq);
+				if (record == null)
+					break;
+				if (record == NO_RECORD)
+					continue;
+				try {
+					record.writeTo(output);
+				} catch (Throwable e) {
+					logger.log(Level.WARNING, "", e);
+				}
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+		} catch (InterruptedException e) {
+			for (Thread thread : threads) {
+				thread.interrupt();
+			}
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void read() {
+		BinlogFileMappedByteBuffer file = null;
+		if (parser instanceof BinlogParser4) {
+			file = ((BinlogParser4) parser).getFileMappedBuffer();
+			file.setRetireListener(new BinlogFileMappedByteBuffer.RetireListener() {
+				@Override
+				public void beforeRetire(BinlogFileMappedByteBuffer file) throws IOException {
+					awaitRendered();
+				}
+			});
+		}
+		try {
+			while (parser.hasEvent()) {
+				try {
+					// a new event for each, it's passed to the render workers.
+					BinlogEvent event = parser.nextEvent();
+					EventBody body = event.getBody();
+					if ((body instanceof RowsEventBody) | (body instanceof QueryEventBody)) {
+						decodeRing.put(read, event);
+						read++;
+					}
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (InterruptedIOException e) {
+					throw new InterruptedException(e.getMessage());
+				} catch (Throwable e) {
+					logger.log(Level.WARNING, "", e);
+				}
+			}
+		} catch (InterruptedException e) {
+			logger.log(Level.WARNING, "Reader interrupted, ending ...");
+		} finally {
+			if (file != null) {
+				file.setRetireListener(null);
+			}
+			decodeRing.close(read);
+			sinkRing.close(read);
+		}
+	}
+	
+	/**
+	 * Wait until the events put to the decode ring are rendered.
+	 */
+	private void awaitRendered() throws InterruptedIOException {
+		int spins = 0;
+		try {
+			while (rendered.get() < read) {
+				spins = MinerRing.await(spins);
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted while waiting for the render workers.");
+		}
+	}
+	
+	private void render() {
+		try {
+			while (true) {
+				long seq = claimed.getAndIncrement();
+				BinlogEvent event = decodeRing.take(seq);
+				if (event == null)
+					break;
+				MinerRecord record = null;
+				try {
+					record = BinlogMiner.render(event, binlogMeta, dbRef);
+				} catch (Throwable e) {
+					EventType eventType = event.getHeader().getEventType();
+					logger.log(Level.WARNING, "Render " + eventType + " at " + event.getHeader().getStartPosition()
+							+ " failed.", e);
+				} finally {
+					rendered.incrementAndGet(); // the event body is not used any more.
+				}
+				sinkRing.put(seq, record == null ? NO_RECORD : record);
+			}
+		} catch (InterruptedException e) {
+		}
+	}
+}
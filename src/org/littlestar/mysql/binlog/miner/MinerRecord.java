@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.sql.StatmentPair;
+
+/**
+ * The redo/undo statements of a rows event or query event, rendered by the miner.
+ */
+final class MinerRecord {
+	final Timestamp eventTimestamp;
+	final EventType eventType;
+	final String schemaName;
+	final String tableName;
+	final long startPos;
+	final long endPos;
+	final List<StatmentPair> stmtPairs;
+	
+	MinerRecord(Timestamp eventTimestamp, EventType eventType, String schemaName, String tableName, long startPos,
+			long endPos, List<StatmentPair> stmtPairs) {
+		this.eventTimestamp = eventTimestamp;
+		this.eventType = eventType;
+		this.schemaName = schemaName;
+		this.tableName = tableName;
+		this.startPos = startPos;
+		this.endPos = endPos;
+		this.stmtPairs = stmtPairs;
+	}
+	
+	void writeTo(MinerOutput output) throws Exception {
+		output.write(eventTimestamp, eventType, schemaName, tableName, startPos, endPos, stmtPairs);
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded lock-free ring of sequenced elements, the stages of MinerPipeline are joined by rings.
+ * 
+ * Each sequence (0, 1, 2 ...) is put once and taken once, by any thread: put(seq) waits until the
+ * element of seq - capacity is taken (backpressure), take(seq) waits until the element of seq is 
+ * put. So a consumer taking the sequences in order gets the elements in order, no matter in which 
+ * order they are put by the producers.
+ * 
+ * The state of a slot is its sequence (AtomicLongArray): seq means the slot is free for seq, 
+ * seq + 1 means the element of seq is put. Waiting is spin, yield and then park, it's interrupted 
+ * by Thread.interrupt().
+ */
+public final class MinerRing<E> {
+	private final int capacity;
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong puts = new AtomicLong(0L);
+	private final AtomicLong takes = new AtomicLong(0L);
+	private volatile long end = Long.MAX_VALUE;
+	
+	/**
+	 * @param capacity rounded up to power of 2, at least 2 (with one slot, "element of seq is put" is 
+	 *     same state as "free for seq + 1").
+	 */
+	public MinerRing(int capacity) {
+		if (capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("capacity " + capacity + " out of range [1, 2^30].");
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		size = Math.max(2, size);
+		this.capacity = size;
+		mask = size - 1;
+		elements = new AtomicReferenceArray<E>(size);
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+	}
+	
+	public void put(long seq, E element) throws InterruptedException {
+		final int slot = (int) seq & mask;
+		int spins = 0;
+		while (sequences.get(slot) != seq) {
+			spins = await(spins);
+		}
+		elements.lazySet(slot, element);
+		sequences.set(slot, seq + 1);
+		puts.incrementAndGet();
+	}
+	
+	/**
+	 * @return the element of seq, null if the ring is closed before seq.
+	 */
+	public E take(long seq) throws InterruptedException {
+		final int slot = (int) seq & mask;
+		int spins = 0;
+		while (sequences.get(slot) != seq + 1) {
+			if (seq >= end)
+				return null;
+			spins = await(spins);
+		}
+		E element = elements.get(slot);
+		elements.lazySet(slot, null);
+		sequences.set(slot, seq + capacity);
+		takes.incrementAndGet();
+		return element;
+	}
+	
+	/**
+	 * No more elements from the end sequence, the takes of sequences after end return null.
+	 */
+	public void close(long end) {
+		this.end = end;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	/**
+	 * @return the number of elements put but not taken, approximate if the ring is in use.
+	 */
+	public long depth() {
+		return Math.min(capacity, Math.max(0L, puts.get() - takes.get()));
+	}
+	
+	/**
+	 * One round of waiting: spin, yield and then park.
+	 */
+	static int await(int spins) throws InterruptedException {
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		if (spins >= 128) {
+			LockSupport.parkNanos(50000L);
+		} else if (spins >= 64) {
+			Thread.yield();
+		}
+		return spins + 1;
+	}
+}
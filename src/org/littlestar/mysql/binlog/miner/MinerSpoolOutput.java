@@ -0,0 +1,152 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.sql.StatmentPair;
+
+/**
+ * Spool the statements to a temporary file, used by the parallel mining: the miners of the binlog
+ * files write to their own spool, and the spools are replayed to the final output in the order of
+ * binlog files.
+ * 
+ * Strings are written as length (int, -1 for null) and UTF-8 bytes, DataOutput.writeUTF() is limited
+ * to 64 KB and the statements could be larger.
+ */
+public class MinerSpoolOutput implements MinerOutput {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private final File spoolFile;
+	private DataOutputStream out;
+	
+	public MinerSpoolOutput(File spoolFile) throws IOException {
+		this.spoolFile = spoolFile;
+		out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spoolFile), 65536));
+	}
+	
+	/**
+	 * Create a spool on a new temporary file.
+	 */
+	public static MinerSpoolOutput newSpool(String prefix) throws IOException {
+		File spoolFile = File.createTempFile(prefix, ".spool");
+		spoolFile.deleteOnExit();
+		return new MinerSpoolOutput(spoolFile);
+	}
+	
+	public File getSpoolFile() {
+		return spoolFile;
+	}
+	
+	@Override
+	public void write(Timestamp eventTimestamp, EventType eventType, String schemaName, String tableName,
+			long startPos, long endPos, List<StatmentPair> stmtPairs) throws IOException {
+		out.writeLong(eventTimestamp.getTime());
+		out.writeInt(eventType.getTypeCode());
+		writeString(schemaName);
+		writeString(tableName);
+		out.writeLong(startPos);
+		out.writeLong(endPos);
+		out.writeInt(stmtPairs.size());
+		for (StatmentPair stmtPair : stmtPairs) {
+			writeString(stmtPair.getUndoStatement());
+			writeString(stmtPair.getRedoStatement());
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (out != null) {
+			out.close();
+			out = null;
+		}
+	}
+	
+	/**
+	 * Write the spooled statements to the output in the spooled order, the spool must be closed.
+	 */
+	public void replay(MinerOutput output) throws Exception {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spoolFile), 65536));
+		try {
+			while (true) {
+				long timestamp;
+				try {
+					timestamp = in.readLong();
+				} catch (EOFException e) {
+					break;
+				}
+				EventType eventType = EventType.getEventType(in.readInt());
+				String schemaName = readString(in);
+				String tableName = readString(in);
+				long startPos = in.readLong();
+				long endPos = in.readLong();
+				int pairs = in.readInt();
+				ArrayList<StatmentPair> stmtPairs = new ArrayList<StatmentPair>(pairs);
+				for (int i = 0; i < pairs; i++) {
+					StatmentPair stmtPair = new StatmentPair();
+					stmtPair.setUndoStatement(readString(in));
+					stmtPair.setRedoStatement(readString(in));
+					stmtPairs.add(stmtPair);
+				}
+				output.write(new Timestamp(timestamp), eventType, schemaName, tableName, startPos, endPos, stmtPairs);
+			}
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Close and delete the spool file.
+	 */
+	public void delete() {
+		try {
+			close();
+		} catch (IOException e) {
+		}
+		spoolFile.delete();
+	}
+	
+	private void writeString(String str) throws IOException {
+		if (str == null) {
+			out.writeInt(-1);
+		} else {
+			byte[] bytes = str.getBytes(UTF8);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+	}
+	
+	private static String readString(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if (len < 0)
+			return null;
+		byte[] bytes = new byte[len];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+}
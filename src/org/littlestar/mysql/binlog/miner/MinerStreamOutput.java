@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.io.PrintStream;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.parser.ParserHelper;
+import org.littlestar.mysql.binlog.sql.StatmentPair;
+
+/**
+ * Print the statements to the stream, the stream is flushed (not closed) when the output is closed.
+ */
+public class MinerStreamOutput implements MinerOutput {
+	private final PrintStream outputStream;
+	
+	public MinerStreamOutput(PrintStream outputStream) {
+		this.outputStream = outputStream;
+	}
+	
+	@Override
+	public void write(Timestamp eventTimestamp, EventType eventType, String schemaName, String tableName,
+			long startPos, long endPos, List<StatmentPair> stmtPairs) {
+		outputStream.println(ParserHelper.getString(eventTimestamp) + " " + eventType.toString() + " "
+				+ schemaName + "." + tableName + " start-pos: " + startPos + " end-pos: " + endPos);
+		for (StatmentPair stmtPair : stmtPairs) {
+			outputStream.println("REDO# " + stmtPair.getRedoStatement());
+			outputStream.println("UNDO# " + stmtPair.getUndoStatement());
+		}
+	}
+	
+	@Override
+	public void close() {
+		outputStream.flush();
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.miner;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.sql.StatmentPair;
+
+/**
+ * Insert the statements into the output table in batches.
+ */
+public class MinerTableOutput implements MinerOutput {
+	private static final int batchSize = 600;
+	private final Connection outputConnection;
+	private final String outputTable;
+	private PreparedStatement stmt = null;
+	private int num = 0;
+	
+	public MinerTableOutput(Connection outputConnection, String outputTable) {
+		this.outputConnection = outputConnection;
+		this.outputTable = outputTable;
+	}
+	
+	@Override
+	public void write(Timestamp eventTimestamp, EventType eventType, String schemaName, String tableName,
+			long startPos, long endPos, List<StatmentPair> stmtPairs) throws SQLException {
+		if (stmt == null) {
+			final String outputStmt = "insert into " + outputTable + " (event_timestamp,"
+					+ "event_type, table_schema, table_name, start_pos, "
+					+ "end_pos, undo_stmt, redo_stmt) values(?, ?, ?, ?, ?, ?, ?, ?)";
+			stmt = outputConnection.prepareStatement(outputStmt);
+		}
+		for (StatmentPair stmtPair : stmtPairs) {
+			stmt.setTimestamp(1, eventTimestamp);
+			stmt.setString(2, eventType.toString());
+			stmt.setString(3, schemaName);
+			stmt.setString(4, tableName);
+			stmt.setLong(5, startPos);
+			stmt.setLong(6, endPos);
+			stmt.setString(7, stmtPair.getUndoStatement());
+			stmt.setString(8, stmtPair.getRedoStatement());
+			stmt.addBatch();
+			num++;
+			if (num % batchSize == 0) {
+				stmt.executeBatch();
+			}
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (stmt == null)
+			return;
+		try {
+			stmt.executeBatch();
+			stmt.close();
+		} catch (SQLException e) {
+			throw new IOException("Insert into output table '" + outputTable + "' failed.", e);
+		} finally {
+			stmt = null;
+		}
+	}
+}
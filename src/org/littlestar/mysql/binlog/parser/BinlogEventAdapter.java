@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.parser;
+
+import org.littlestar.mysql.binlog.event.body.EventBody;
+import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.event.view.GtidEventView;
+import org.littlestar.mysql.binlog.event.view.QueryEventView;
+import org.littlestar.mysql.binlog.event.view.RowsEventView;
+
+/**
+ * BinlogEventListener with empty callbacks.
+ */
+public abstract class BinlogEventAdapter implements BinlogEventListener {
+	@Override
+	public void onTableMap(EventHeader header, TableMapEventBody tableMap) throws Throwable {
+	}
+	
+	@Override
+	public void onRows(EventHeader header, RowsEventView rows) throws Throwable {
+	}
+	
+	@Override
+	public void onQuery(EventHeader header, QueryEventView query) throws Throwable {
+	}
+	
+	@Override
+	public void onXid(EventHeader header, long xid) throws Throwable {
+	}
+	
+	@Override
+	public void onGtid(EventHeader header, GtidEventView gtid) throws Throwable {
+	}
+	
+	@Override
+	public void onEvent(EventHeader header, EventBody body) throws Throwable {
+	}
+}
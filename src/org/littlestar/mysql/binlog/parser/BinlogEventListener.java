@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.parser;
+
+import org.littlestar.mysql.binlog.event.body.EventBody;
+import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.event.view.GtidEventView;
+import org.littlestar.mysql.binlog.event.view.QueryEventView;
+import org.littlestar.mysql.binlog.event.view.RowsEventView;
+
+/**
+ * Push-style callbacks of BinlogParser.nextEvent(BinlogEventListener). The event header and views 
+ * are flyweights reused by the parser, they're only valid in the callback. 
+ * 
+ * The table maps are kept by the parser (BinlogFileMeta), so TableMapEventBody is valid after the 
+ * callback. Other events (and the events not accepted by the event filter or table filter, with 
+ * null body) are passed to onEvent.
+ * 
+ * Extend BinlogEventAdapter to implement some of the callbacks.
+ */
+public interface BinlogEventListener {
+	public void onTableMap(EventHeader header, TableMapEventBody tableMap) throws Throwable;
+	
+	/**
+	 * WRITE_ROWS_EVENT, UPDATE_ROWS_EVENT and DELETE_ROWS_EVENT (v1 and v2).
+	 */
+	public void onRows(EventHeader header, RowsEventView rows) throws Throwable;
+	
+	public void onQuery(EventHeader header, QueryEventView query) throws Throwable;
+	
+	public void onXid(EventHeader header, long xid) throws Throwable;
+	
+	/**
+	 * GTID_LOG_EVENT and ANONYMOUS_GTID_LOG_EVENT.
+	 */
+	public void onGtid(EventHeader header, GtidEventView gtid) throws Throwable;
+	
+	/**
+	 * @param body the event body, null if the event is filtered.
+	 */
+	public void onEvent(EventHeader header, EventBody body) throws Throwable;
+}
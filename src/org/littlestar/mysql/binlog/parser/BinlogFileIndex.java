@@ -0,0 +1,375 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.parser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.littlestar.mysql.binlog.event.BinlogEvent;
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.impl.GtidLogEventBody;
+import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+import org.littlestar.mysql.binlog.event.header.EventHeader;
+
+/**
+ * A sparse position index of binlog file, saved as sidecar file "<binlog file>.idx". 
+ * 
+ * A checkpoint is recorded at the start of a transaction (GTID event, or the event after XID event
+ * for the binlog files without GTID events) every checkpoint interval bytes, with:
+ *   - the start position of the transaction;
+ *   - the max timestamp and max GTID transaction id (gno) of the events before the position, they
+ *     are running max values, so the checkpoints can be binary searched even the timestamps of 
+ *     events are not in order;
+ *   - the positions of the current TABLE_MAP_EVENTs of each table id at the position, the parser
+ *     reads them again to restore the table maps when seeking to the checkpoint. Only the table
+ *     ids seen since the previous checkpoint are kept, the idle table ids and the old table ids of
+ *     remapped tables are dropped (MySQL writes the table maps of a transaction before its rows
+ *     events, so they are not needed to decode the events after the checkpoint).
+ * 
+ * Index file layout (big endian):
+ *   4              magic "BLIX"
+ *   4              version
+ *   1              byte order of binlog file, 0: little endian, 1: big endian
+ *   8              binlog file size
+ *   8              binlog file last modified
+ *   8              checkpoint interval
+ *   4              number of checkpoints
+ *   checkpoints:
+ *     8              position
+ *     8              max timestamp (ms) before position
+ *     8              max transaction id before position, -1 if no GTID
+ *     4              number of table maps
+ *     8 * n          positions of table maps
+ * 
+ * The index is stale if the binlog file is changed (size or last modified), it's built again.
+ */
+public class BinlogFileIndex {
+	private final static Logger logger = Logger.getLogger(BinlogFileIndex.class.getName());
+	public static final String INDEX_FILE_SUFFIX = ".idx";
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 1024L * 1024L;
+	private static final int MAGIC = 0x424c4958; // "BLIX"
+	private static final int VERSION = 1;
+	
+	private final ByteOrder order;
+	private final long fileSize;
+	private final long lastModified;
+	private final long interval;
+	private final ArrayList<Checkpoint> checkpoints;
+	
+	/**
+	 * A transaction start position of the binlog file.
+	 */
+	public static class Checkpoint {
+		private final long position;
+		private final long timestamp;
+		private final long transactionId;
+		private final long[] tableMapPositions;
+		
+		public Checkpoint(long position, long timestamp, long transactionId, long[] tableMapPositions) {
+			this.position = position;
+			this.timestamp = timestamp;
+			this.transactionId = transactionId;
+			this.tableMapPositions = tableMapPositions;
+		}
+		
+		public long getPosition() {
+			return position;
+		}
+		
+		/**
+		 * @return the max timestamp (ms) of the events before the position.
+		 */
+		public long getTimestamp() {
+			return timestamp;
+		}
+		
+		/**
+		 * @return the max GTID transaction id of the events before the position, -1 if no GTID.
+		 */
+		public long getTransactionId() {
+			return transactionId;
+		}
+		
+		/**
+		 * @return positions of the table maps to read before the events at the position.
+		 */
+		public long[] getTableMapPositions() {
+			return tableMapPositions;
+		}
+		
+		@Override
+		public String toString() {
+			return "position=" + position + ", timestamp=" + timestamp + ", transaction-id=" + transactionId
+					+ ", table-maps=" + tableMapPositions.length;
+		}
+	}
+	
+	private BinlogFileIndex(ByteOrder order, long fileSize, long lastModified, long interval,
+			ArrayList<Checkpoint> checkpoints) {
+		this.order = order;
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+		this.interval = interval;
+		this.checkpoints = checkpoints;
+	}
+	
+	public static File getIndexFile(String binlogFileName) {
+		return new File(binlogFileName + INDEX_FILE_SUFFIX);
+	}
+	
+	/**
+	 * Load the sidecar index of the binlog file, or build and save it if it's missing or stale. 
+	 * The index is still returned if it can't be saved.
+	 */
+	public static BinlogFileIndex getIndex(String binlogFileName, ByteOrder order) throws Throwable {
+		File indexFile = getIndexFile(binlogFileName);
+		BinlogFileIndex index = load(binlogFileName, order);
+		if (index == null) {
+			index = build(binlogFileName, order, DEFAULT_CHECKPOINT_INTERVAL);
+			try {
+				index.save(indexFile);
+			} catch (IOException e) {
+				logger.log(Level.WARNING, "Saving index file '" + indexFile + "' failed.", e);
+			}
+		}
+		return index;
+	}
+	
+	/**
+	 * Scan the binlog file and build the index, only GTID and TABLE_MAP event bodies are read.
+	 */
+	public static BinlogFileIndex build(String binlogFileName, ByteOrder order, long interval) throws Throwable {
+		File binlogFile = new File(binlogFileName);
+		long fileSize = binlogFile.length();
+		long lastModified = binlogFile.lastModified();
+		HashSet<EventType> eventFilter = new HashSet<EventType>();
+		eventFilter.add(EventType.GTID_LOG_EVENT);
+		eventFilter.add(EventType.TABLE_MAP_EVENT);
+		BinlogParser parser = BinlogParserBuilder.newBuilder(binlogFileName)
+				.withByteOrder(order)
+				.withEventFilter(eventFilter)
+				.zeroCopy(true)
+				.lazyDecodeRows(true)
+				.build();
+		ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>();
+		try {
+			// table id -> position of the current table map.
+			LinkedHashMap<Long, Long> tableMaps = new LinkedHashMap<Long, Long>();
+			// schema.table -> current table id.
+			HashMap<String, Long> tableIds = new HashMap<String, Long>();
+			long maxTimestamp = 0L;
+			long maxTransactionId = -1L;
+			long lastCheckpoint = -1L;
+			boolean hasGtid = false;
+			boolean afterXid = false;
+			BinlogEvent event = new BinlogEvent();
+			checkpoints.add(new Checkpoint(parser.getPosition(), maxTimestamp, maxTransactionId, new long[0]));
+			while (parser.hasEvent()) {
+				long position = parser.getPosition();
+				parser.nextEvent(event);
+				EventHeader header = event.getHeader();
+				EventType eventType = header.getEventType();
+				boolean isGtid = eventType == EventType.GTID_LOG_EVENT || eventType == EventType.ANONYMOUS_GTID_LOG_EVENT;
+				hasGtid |= isGtid;
+				boolean transactionStart = isGtid || (!hasGtid && afterXid);
+				if (transactionStart && (lastCheckpoint < 0 || position - lastCheckpoint >= interval)) {
+					pruneTableMaps(tableMaps, tableIds, lastCheckpoint);
+					long[] tableMapPositions = new long[tableMaps.size()];
+					int i = 0;
+					for (Long tableMapPosition : tableMaps.values()) {
+						tableMapPositions[i++] = tableMapPosition;
+					}
+					checkpoints.add(new Checkpoint(position, maxTimestamp, maxTransactionId, tableMapPositions));
+					lastCheckpoint = position;
+				}
+				maxTimestamp = Math.max(maxTimestamp, header.getTimestampMillis());
+				if (eventType == EventType.GTID_LOG_EVENT) {
+					GtidLogEventBody gtidLogEventBody = (GtidLogEventBody) event.getBody();
+					maxTransactionId = Math.max(maxTransactionId, gtidLogEventBody.getTransactionId());
+				} else if (eventType == EventType.TABLE_MAP_EVENT) {
+					TableMapEventBody tableMapEventBody = (TableMapEventBody) event.getBody();
+					Long tableId = tableMapEventBody.getTableId();
+					Long oldTableId = tableIds.put(tableMapEventBody.getSchemaName() + "." 
+							+ tableMapEventBody.getTableName(), tableId);
+					if (oldTableId != null && !oldTableId.equals(tableId)) {
+						tableMaps.remove(oldTableId);
+					}
+					tableMaps.put(tableId, position);
+				}
+				afterXid = eventType == EventType.XID_EVENT;
+			}
+		} finally {
+			parser.close();
+		}
+		return new BinlogFileIndex(order, fileSize, lastModified, interval, checkpoints);
+	}
+	
+	/**
+	 * Drop the table ids which are not seen since the previous checkpoint.
+	 */
+	private static void pruneTableMaps(LinkedHashMap<Long, Long> tableMaps, HashMap<String, Long> tableIds,
+			long previousCheckpoint) {
+		Iterator<Long> positions = tableMaps.values().iterator();
+		while (positions.hasNext()) {
+			if (positions.next() < previousCheckpoint) {
+				positions.remove();
+			}
+		}
+		Iterator<Long> ids = tableIds.values().iterator();
+		while (ids.hasNext()) {
+			if (!tableMaps.containsKey(ids.next())) {
+				ids.remove();
+			}
+		}
+	}
+	
+	/**
+	 * @return the index of the binlog file, null if the index file is missing or stale.
+	 */
+	public static BinlogFileIndex load(String binlogFileName, ByteOrder order) throws IOException {
+		File binlogFile = new File(binlogFileName);
+		File indexFile = getIndexFile(binlogFileName);
+		if (!indexFile.isFile())
+			return null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			ByteOrder indexOrder = in.readByte() == 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			long fileSize = in.readLong();
+			long lastModified = in.readLong();
+			if (indexOrder != order || fileSize != binlogFile.length() || lastModified != binlogFile.lastModified())
+				return null;
+			long interval = in.readLong();
+			int count = in.readInt();
+			ArrayList<Checkpoint> checkpoints = new ArrayList<Checkpoint>(count);
+			for (int i = 0; i < count; i++) {
+				long position = in.readLong();
+				long timestamp = in.readLong();
+				long transactionId = in.readLong();
+				long[] tableMapPositions = new long[in.readInt()];
+				for (int j = 0; j < tableMapPositions.length; j++) {
+					tableMapPositions[j] = in.readLong();
+				}
+				checkpoints.add(new Checkpoint(position, timestamp, transactionId, tableMapPositions));
+			}
+			return new BinlogFileIndex(indexOrder, fileSize, lastModified, interval, checkpoints);
+		} finally {
+			in.close();
+		}
+	}
+	
+	public void save(File indexFile) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeByte(order == ByteOrder.LITTLE_ENDIAN ? 0 : 1);
+			out.writeLong(fileSize);
+			out.writeLong(lastModified);
+			out.writeLong(interval);
+			out.writeInt(checkpoints.size());
+			for (Checkpoint checkpoint : checkpoints) {
+				out.writeLong(checkpoint.position);
+				out.writeLong(checkpoint.timestamp);
+				out.writeLong(checkpoint.transactionId);
+				out.writeInt(checkpoint.tableMapPositions.length);
+				for (long position : checkpoint.tableMapPositions) {
+					out.writeLong(position);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * @return the last checkpoint before which all events are earlier than the timestamp (ms).
+	 */
+	public Checkpoint seekTimestamp(long timestamp) {
+		int low = 1, high = checkpoints.size() - 1, found = 0;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (checkpoints.get(mid).timestamp < timestamp) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return checkpoints.get(found);
+	}
+	
+	/**
+	 * @return the last checkpoint before which all GTID transaction ids are less than the transaction id.
+	 */
+	public Checkpoint seekTransactionId(long transactionId) {
+		int low = 1, high = checkpoints.size() - 1, found = 0;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (checkpoints.get(mid).transactionId < transactionId) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return checkpoints.get(found);
+	}
+	
+	/**
+	 * @return the last checkpoint at or before the position.
+	 */
+	public Checkpoint seekPosition(long position) {
+		int low = 0, high = checkpoints.size() - 1, found = 0;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (checkpoints.get(mid).position <= position) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return checkpoints.get(found);
+	}
+	
+	public int size() {
+		return checkpoints.size();
+	}
+	
+	public Checkpoint getCheckpoint(int i) {
+		return checkpoints.get(i);
+	}
+	
+	public long getCheckpointInterval() {
+		return interval;
+	}
+}
@@ -17,42 +17,120 @@
 package org.littlestar.mysql.binlog.parser;
 
 import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * The (thread-safe) handle of a memory mapped binlog file.
+ * 
+ * The file is mapped by windows of mappingWindowSize bytes, so relay logs bigger than 2GB
+ * (the max size of a MappedByteBuffer) can be read, positions are long. By default, the window
+ * size is Integer.MAX_VALUE, it means a binlog (max_binlog_size is 1GB) is mapped as a whole.
+ * 
+ * The read methods of this class are synchronized, for single thread reading, use a 
+ * BinlogFileMappedReader instead, which has it's own position and window.
+ * 
+ * The windows are unmapped as soon as the readers leave them (retired), and all mappings are 
+ * unmapped when the file is closed, so the mapping pool counts exactly the mapped bytes. The slices
+ * of a window (zero-copy event bodies) must not be used after the window is retired, a consumer
+ * which keeps them across reads (i.e. pipelined) finishes with them in a RetireListener.
+ */
 public class BinlogFileMappedByteBuffer implements Closeable {
 	private final static Logger logger = Logger.getLogger(BinlogFileMappedByteBuffer.class.getName());
 	private static final MapMode READ_ONLY_MODE = MapMode.READ_ONLY;
+	public static final long DEFAULT_MAPPING_WINDOW_SIZE = Integer.MAX_VALUE;
 	private final Object lock = new Object();
 	private final String binlogFileName;
 	private final RandomAccessFile binlogFile;
 	private final FileChannel binlogFileChannel;
-	private MappedByteBuffer blogFileBuffer;
 	private final ByteOrder order;
+	private final long mappingWindowSize;
+	private final BinlogFileMappedReader reader;
+	private final BinlogFileMappingPool mappingPool;
+	// live mappings of the file -> mapped bytes;
+	private final IdentityHashMap<MappedByteBuffer, Long> mappings = new IdentityHashMap<MappedByteBuffer, Long>();
+	private long mappedBytes = 0L;
+	private volatile RetireListener retireListener = null;
+	private boolean closed = false;
 	
-	/*
-	 * max_binlog_size option's maximum value is 1GB.
+	/**
+	 * Called by a reader before it retires a window, the window is unmapped after the call.
 	 */
+	public interface RetireListener {
+		void beforeRetire(BinlogFileMappedByteBuffer file) throws IOException;
+	}
+	
 	public BinlogFileMappedByteBuffer(final String binlogFileName, final ByteOrder order) throws IOException {
+		this(binlogFileName, order, DEFAULT_MAPPING_WINDOW_SIZE);
+	}
+	
+	public BinlogFileMappedByteBuffer(final String binlogFileName, final ByteOrder order, final long mappingWindowSize)
+			throws IOException {
+		this(binlogFileName, order, mappingWindowSize, null);
+	}
+	
+	/**
+	 * @param mappingPool the pool to cap total mapped bytes, null if no limit. 
+	 */
+	public BinlogFileMappedByteBuffer(final String binlogFileName, final ByteOrder order, final long mappingWindowSize,
+			final BinlogFileMappingPool mappingPool) throws IOException {
+		if (mappingWindowSize <= 0 || mappingWindowSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("mapping window size " + mappingWindowSize + " out of range [1, "
+					+ Integer.MAX_VALUE + "]");
+		}
 		this.binlogFileName = binlogFileName;
 		this.order = order;
+		this.mappingWindowSize = mappingWindowSize;
+		this.mappingPool = mappingPool;
 		binlogFile = new RandomAccessFile(binlogFileName, "r");
 		binlogFileChannel = binlogFile.getChannel();
-		blogFileBuffer = binlogFileChannel.map(READ_ONLY_MODE, 0, binlogFile.length());
+		reader = new BinlogFileMappedReader(this);
 	}
 	
+	/**
+	 * Unmap all mappings of the binlog file and close it.
+	 */
 	@Override
 	public void close() throws IOException {
+		ArrayList<MappedByteBuffer> liveMappings;
+		synchronized (lock) {
+			if (closed)
+				return;
+			closed = true;
+			liveMappings = new ArrayList<MappedByteBuffer>(mappings.keySet());
+		}
+		for (MappedByteBuffer mapping : liveMappings) {
+			release(mapping);
+		}
 		binlogFileChannel.close();
 		binlogFile.close();
 	}
 	
+	/**
+	 * @param listener called before a window is retired, null for none.
+	 */
+	public void setRetireListener(RetireListener listener) {
+		retireListener = listener;
+	}
+	
+	public long getMappedBytes() {
+		synchronized (lock) {
+			return mappedBytes;
+		}
+	}
+	
 	public String getFileName() {
 		return binlogFileName;
 	}
@@ -61,95 +139,206 @@ public class BinlogFileMappedByteBuffer implements Closeable {
 		return order;
 	}
 	
+	public long getMappingWindowSize() {
+		return mappingWindowSize;
+	}
+	
+	/**
+	 * Current size of the binlog file.
+	 */
+	public long size() throws IOException {
+		return binlogFileChannel.size();
+	}
+	
+	/**
+	 * Map a window of the binlog file, the window contains [position, position + minLength), and
+	 * it's size is max(minLength, mapping window size), but not beyond the end of the file.
+	 */
+	public MappedByteBuffer map(long position, int minLength) throws IOException {
+		long fileSize = binlogFileChannel.size();
+		if (position + minLength > fileSize) {
+			throw new EOFException("Read [" + position + ", " + (position + minLength) + ") beyond the end of '"
+					+ binlogFileName + "' (" + fileSize + " bytes).");
+		}
+		long size = Math.min(Math.max(minLength, mappingWindowSize), fileSize - position);
+		if (mappingPool != null) {
+			mappingPool.acquire(size, getMappedBytes());
+		}
+		MappedByteBuffer window;
+		try {
+			synchronized (lock) {
+				if (closed)
+					throw new IOException("'" + binlogFileName + "' was closed.");
+				window = binlogFileChannel.map(READ_ONLY_MODE, position, size);
+				mappings.put(window, size);
+				mappedBytes += size;
+			}
+		} catch (IOException e) {
+			if (mappingPool != null) {
+				mappingPool.release(size);
+			}
+			throw e;
+		}
+		window.order(order);
+		return window;
+	}
+	
+	/**
+	 * A reader leaves its window.
+	 */
+	void retire(MappedByteBuffer window) throws IOException {
+		RetireListener listener = retireListener;
+		try {
+			if (listener != null) {
+				listener.beforeRetire(this);
+			}
+		} finally {
+			release(window);
+		}
+	}
+	
+	// remove the mapping from the live mappings (and the pool) and unmap it.
+	private void release(MappedByteBuffer mapping) {
+		Long size;
+		synchronized (lock) {
+			size = mappings.remove(mapping);
+			if (size == null)
+				return;
+			mappedBytes -= size;
+		}
+		try {
+			UNMAPPER.unmap(mapping);
+		} catch (Throwable e) {
+			logger.log(Level.WARNING, "Failed to unmap '" + binlogFileName + "', it will be unmapped by GC.", e);
+		} finally {
+			if (mappingPool != null) {
+				mappingPool.release(size);
+			}
+		}
+	}
+	
+	/*
+	 * MappedByteBuffer can't be unmapped by public API, it's unmapped when it's collected by GC. 
+	 * Java 9+: sun.misc.Unsafe.invokeCleaner(ByteBuffer);
+	 * Java 8 : ((sun.nio.ch.DirectBuffer) buffer).cleaner().clean();
+	 */
+	private static final Unmapper UNMAPPER = Unmapper.newUnmapper();
+	
+	private static class Unmapper {
+		private final Object unsafe;
+		private final Method invokeCleaner;
+		
+		private Unmapper(Object unsafe, Method invokeCleaner) {
+			this.unsafe = unsafe;
+			this.invokeCleaner = invokeCleaner;
+		}
+		
+		static Unmapper newUnmapper() {
+			try {
+				Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+				Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+				Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+				theUnsafe.setAccessible(true);
+				return new Unmapper(theUnsafe.get(null), invokeCleaner);
+			} catch (Throwable e) {
+				return new Unmapper(null, null); // Java 8
+			}
+		}
+		
+		void unmap(MappedByteBuffer mapping) throws Throwable {
+			if (invokeCleaner != null) {
+				invokeCleaner.invoke(unsafe, mapping);
+			} else {
+				Method cleanerMethod = mapping.getClass().getMethod("cleaner");
+				cleanerMethod.setAccessible(true);
+				Object cleaner = cleanerMethod.invoke(mapping);
+				if (cleaner != null) {
+					cleaner.getClass().getMethod("clean").invoke(cleaner);
+				}
+			}
+		}
+	}
+	
 	public void remap(long position, long size) throws IOException {
 		synchronized(lock) {
-			int pos = blogFileBuffer.position(); 
-			blogFileBuffer = binlogFileChannel.map(READ_ONLY_MODE, position, size);
-			blogFileBuffer.position(pos);
+			reader.mapWindow(position, (int) Math.min(size, Integer.MAX_VALUE));
 		}
 	}
 	
-	public int getPosition() {
+	public long getPosition() {
 		synchronized(lock) {
-			return blogFileBuffer.position();
+			return reader.getPosition();
 		}
 	}
 	
-	public void setPosition(int newPosition) {
+	public void setPosition(long newPosition) {
 		synchronized(lock) {
-			blogFileBuffer.position(newPosition);
+			reader.setPosition(newPosition);
 		}
 	}
-	/*
-	public int remaining() {
+	
+	public long remaining(boolean withCheck) {
 		synchronized (lock) {
-			return blogFileBuffer.remaining();
+			return reader.remaining(withCheck);
 		}
 	}
-	*/
-	public int remaining(boolean withCheck) {
+	
+	public void skip(long length) {
 		synchronized (lock) {
-			try {
-				// For current writing binlog file;
-				long fileSize = binlogFileChannel.size();
-				if (fileSize > blogFileBuffer.limit()) {
-					remap(0, fileSize);
-				}
-			} catch (Throwable e) {
-				logger.log(Level.WARNING, "", e);
-			}
-			return blogFileBuffer.remaining();
+			reader.skip(length);
 		}
 	}
 	
-	public void skip(int length) {
+	public byte[] getBytes(int length) throws IOException {
 		synchronized (lock) {
-			int pos = blogFileBuffer.position();
-			blogFileBuffer.position(pos + length);
+			return reader.getBytes(length);
 		}
 	}
 	
-	public byte[] getBytes(int length) {
-		byte[] raw = new byte[length];
+	/**
+	 * Return a read-only slice [position, position + length) of the mapped file without copy,
+	 * and move the position to the end of the slice. The slice shares the mapped memory, 
+	 * so it's only valid before the window is retired or the buffer is closed.
+	 */
+	public ByteBuffer getSlice(int length) throws IOException {
 		synchronized (lock) {
-			blogFileBuffer.get(raw);
+			return reader.getSlice(length);
 		}
-		return raw;
 	}
 	
-	public byte getByte() {
+	public byte getByte() throws IOException {
 		synchronized (lock) {
-			return blogFileBuffer.get();
+			return reader.getByte();
 		}
 	}
 	
-	public int getInteger(int length) {
-		byte[] raw = getBytes(length);
-		int retVal = ParserHelper.getInteger(raw, order);
-		return retVal;
+	public int getInteger(int length) throws IOException {
+		synchronized (lock) {
+			return reader.getInteger(length);
+		}
 	}
 	
-	public int getUnsignedInteger(int length) {
-		byte[] raw = getBytes(length);
-		int retVal = ParserHelper.getUnsignedInteger(raw, order);
-		return retVal;
+	public int getUnsignedInteger(int length) throws IOException {
+		synchronized (lock) {
+			return reader.getUnsignedInteger(length);
+		}
 	}
 	
-	public long getLong(int length) {
-		byte[] raw = getBytes(length);
-		long retVal = ParserHelper.getLong(raw, order);
-		return retVal;
+	public long getLong(int length) throws IOException {
+		synchronized (lock) {
+			return reader.getLong(length);
+		}
 	}
 	
-	public long getUnsignedLong(int length) {
-		byte[] raw = getBytes(length);
-		long retVal = ParserHelper.getUnsignedLong(raw, order);
-		return retVal;
+	public long getUnsignedLong(int length) throws IOException {
+		synchronized (lock) {
+			return reader.getUnsignedLong(length);
+		}
 	}
 	
-	public String getString(int length) {
-		byte[] raw = getBytes(length);
-		String retVal = ParserHelper.getString(raw);
-		return retVal;
+	public String getString(int length) throws IOException {
+		synchronized (lock) {
+			return reader.getString(length);
+		}
 	}
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Single consumer reader of a BinlogFileMappedByteBuffer. 
+ * 
+ * The reader is NOT thread-safe and takes no lock when reading, it keeps it's own position cursor
+ * and mapping window, and supports absolute-index getters which don't move the cursor.
+ * When a read is beyond current window (or straddles the window boundary), a new window is mapped
+ * from the position of the read, so a event is always read from one window.
+ * The BinlogFileMappedByteBuffer is the (thread-safe) handle of the binlog file.
+ */
+public class BinlogFileMappedReader {
+	private final static Logger logger = Logger.getLogger(BinlogFileMappedReader.class.getName());
+	private final BinlogFileMappedByteBuffer handle;
+	private final ByteOrder order;
+	private MappedByteBuffer window;
+	private long windowStart = 0L;
+	private long windowLimit = 0L;
+	private long position = 0L;
+	private long fileSize;
+	
+	public BinlogFileMappedReader(final BinlogFileMappedByteBuffer handle) throws IOException {
+		this.handle = handle;
+		this.order = handle.getByteOrder();
+		fileSize = handle.size();
+	}
+	
+	public BinlogFileMappedByteBuffer getHandle() {
+		return handle;
+	}
+	
+	public ByteOrder getByteOrder() {
+		return order;
+	}
+	
+	public long getPosition() {
+		return position;
+	}
+	
+	public void setPosition(long newPosition) {
+		if (newPosition < 0 || newPosition > fileSize)
+			throw new IllegalArgumentException("position " + newPosition + " out of range [0, " + fileSize + "]");
+		position = newPosition;
+	}
+	
+	public void skip(long length) {
+		setPosition(position + length);
+	}
+	
+	/**
+	 * @param withCheck to support online binlog file parsing, when withCheck = true, 
+	 *        will check the size of binlog file again, the grown part will be mapped when read.
+	 */
+	public long remaining(boolean withCheck) {
+		if (withCheck) {
+			try {
+				fileSize = handle.size();
+			} catch (Throwable e) {
+				logger.log(Level.WARNING, "", e);
+			}
+		}
+		return fileSize - position;
+	}
+	
+	/**
+	 * Map a new window which contains [position, position + length). The current window is retired
+	 * before the new one is mapped (it's not used by the new window), so a reader waiting for the
+	 * mapping pool holds no mapping, and the readers sharing a pool can't wait for each other.
+	 */
+	void mapWindow(long position, int length) throws IOException {
+		MappedByteBuffer retired = window;
+		window = null;
+		windowStart = 0L;
+		windowLimit = 0L; // no window, the next read maps again if the mapping fails.
+		if (retired != null) {
+			handle.retire(retired);
+		}
+		window = handle.map(position, length);
+		windowStart = position;
+		windowLimit = window.limit();
+		fileSize = Math.max(fileSize, windowStart + windowLimit);
+	}
+	
+	/**
+	 * The index of position in current window, [position, position + length) is always in the window
+	 * (which may be remapped), so it must be called before the window is used.
+	 */
+	private int index(long position, int length) throws IOException {
+		long index = position - windowStart;
+		if (index < 0 || index + length > windowLimit) {
+			mapWindow(position, length);
+			index = 0;
+		}
+		return (int) index;
+	}
+	
+	/* Absolute getters, the position cursor is not changed. */
+	
+	public byte getByte(long position) throws IOException {
+		int index = index(position, 1);
+		return window.get(index);
+	}
+	
+	public int getInteger(long position, int length) throws IOException {
+		return (int) getLong(position, length);
+	}
+	
+	public int getUnsignedInteger(long position, int length) throws IOException {
+		return (int) getUnsignedLong(position, length);
+	}
+	
+	public long getLong(long position, int length) throws IOException {
+		int index = index(position, length);
+		return ParserHelper.getLong(window, index, length, order);
+	}
+	
+	public long getUnsignedLong(long position, int length) throws IOException {
+		int index = index(position, length);
+		return ParserHelper.getUnsignedLong(window, index, length, order);
+	}
+	
+	public byte[] getBytes(long position, int length) throws IOException {
+		int index = index(position, length);
+		return ParserHelper.getBytes(window, index, index + length);
+	}
+	
+	/**
+	 * Return a read-only slice [position, position + length) of the mapped file without copy, 
+	 * the slice is indexed from 0 to length.
+	 */
+	public ByteBuffer getSlice(long position, int length) throws IOException {
+		int index = index(position, length);
+		ByteBuffer dup = window.duplicate();
+		dup.position(index);
+		dup.limit(index + length);
+		return dup.slice().order(order);
+	}
+	
+	/* Relative getters, read at the position cursor and move it. */
+	
+	public byte getByte() throws IOException {
+		byte value = getByte(position);
+		position++;
+		return value;
+	}
+	
+	public int getInteger(int length) throws IOException {
+		int value = getInteger(position, length);
+		position += length;
+		return value;
+	}
+	
+	public int getUnsignedInteger(int length) throws IOException {
+		int value = getUnsignedInteger(position, length);
+		position += length;
+		return value;
+	}
+	
+	public long getLong(int length) throws IOException {
+		long value = getLong(position, length);
+		position += length;
+		return value;
+	}
+	
+	public long getUnsignedLong(int length) throws IOException {
+		long value = getUnsignedLong(position, length);
+		position += length;
+		return value;
+	}
+	
+	public byte[] getBytes(int length) throws IOException {
+		byte[] raw = getBytes(position, length);
+		position += length;
+		return raw;
+	}
+	
+	public String getString(int length) throws IOException {
+		return ParserHelper.getString(getBytes(length));
+	}
+	
+	/**
+	 * Return a read-only slice [position, position + length) of the mapped file without copy,
+	 * and move the position cursor to the end of the slice. 
+	 */
+	public ByteBuffer getSlice(int length) throws IOException {
+		ByteBuffer slice = getSlice(position, length);
+		position += length;
+		return slice;
+	}
+}
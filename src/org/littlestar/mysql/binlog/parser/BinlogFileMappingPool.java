@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.parser;
+
+import java.io.InterruptedIOException;
+
+/**
+ * A bounded pool of memory mapping, it caps the total bytes mapped by the BinlogFileMappedByteBuffers
+ * which share the pool. When the cap is reached, mapping a new window waits until other binlog files
+ * release their windows (retired or closed). A file is always allowed to map when no other file holds
+ * a mapping, so a single file bigger than the cap can still be read, window by window.
+ * 
+ * The windows are unmapped when they are released (see BinlogFileMappedByteBuffer), so the bytes
+ * counted by the pool are the bytes mapped.
+ * 
+ * A reader retires its window before mapping the next one, so a waiting reader holds no mapping
+ * and the mappings it waits for are released when their readers move on or are closed.
+ * 
+ * Note: the waiting is for the mappings of other threads, parsers which share a pool should not
+ * be opened more than one at the same time in one thread.
+ */
+public class BinlogFileMappingPool {
+	private final Object lock = new Object();
+	private final long maxMappedBytes;
+	private long mappedBytes = 0L;
+	
+	public BinlogFileMappingPool(long maxMappedBytes) {
+		if (maxMappedBytes <= 0) {
+			throw new IllegalArgumentException("max mapped bytes must be greater than 0.");
+		}
+		this.maxMappedBytes = maxMappedBytes;
+	}
+	
+	public long getMaxMappedBytes() {
+		return maxMappedBytes;
+	}
+	
+	public long getMappedBytes() {
+		synchronized (lock) {
+			return mappedBytes;
+		}
+	}
+	
+	/**
+	 * @param bytes the bytes to map.
+	 * @param ownedBytes the bytes already mapped by the caller (file), which are not waited for.
+	 */
+	void acquire(long bytes, long ownedBytes) throws InterruptedIOException {
+		synchronized (lock) {
+			while (mappedBytes - ownedBytes > 0 && mappedBytes + bytes > maxMappedBytes) {
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for mapping pool.");
+				}
+			}
+			mappedBytes += bytes;
+		}
+	}
+	
+	void release(long bytes) {
+		synchronized (lock) {
+			mappedBytes -= bytes;
+			lock.notifyAll();
+		}
+	}
+}
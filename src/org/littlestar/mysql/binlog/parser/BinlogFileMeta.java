@@ -19,9 +19,9 @@ package org.littlestar.mysql.binlog.parser;
 import java.io.File;
 import java.nio.ByteOrder;
 import java.util.Date;
-import java.util.HashMap;
 
 import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.helper.RowDecoderPlan;
 import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
 
 public class BinlogFileMeta {
@@ -39,14 +39,21 @@ public class BinlogFileMeta {
 	private int checksumLength = 0;
 	private int checksumAlg = 0;
 	private boolean decodeString = false;
+	private boolean zeroCopy = false;
+	private boolean lazyDecodeRows = false;
+	private boolean headerOnly = false;
+	private BinlogFileIndex fileIndex = null;
+	private long mappingWindowSize = BinlogFileMappedByteBuffer.DEFAULT_MAPPING_WINDOW_SIZE;
 	private String defaultCharsetName = "utf8";
 	
-	private final HashMap<Long, TableMapEventBody> tableMapEventBodys;
+	private final TableMapRegistry tableMapRegistry;
+	private int rowEventVersion = -1;
+	private BinlogTableFilter tableFilter = null;
 	
 	public BinlogFileMeta(String blogFileName, ByteOrder order) {
 		blogFile = new File(blogFileName);
 		this.order = order;
-		tableMapEventBodys = new HashMap<Long, TableMapEventBody>();
+		tableMapRegistry = new TableMapRegistry();
 	}
 	
 	public ByteOrder getByteOrder() {
@@ -62,6 +69,7 @@ public class BinlogFileMeta {
 	}
 	
 	public void setServerVersion(String version) {
+		rowEventVersion = -1;
 		serverVersion = version;
 	}
 	
@@ -78,11 +86,77 @@ public class BinlogFileMeta {
 	}
 	
 	public void putTableMapEventBody(TableMapEventBody body) {
-		tableMapEventBodys.put(body.getTableId(), body);
+		// table id can be reused by other table after the table definition cache flushed.
+		boolean skip = tableFilter != null && !tableFilter.accept(body.getSchemaName(), body.getTableName());
+		tableMapRegistry.put(body, skip);
+	}
+	
+	public TableMapRegistry getTableMapRegistry() {
+		return tableMapRegistry;
+	}
+	
+	public void setTableFilter(BinlogTableFilter filter) {
+		if (filter != null && filter.isEmpty())
+			filter = null;
+		tableFilter = filter;
+		tableMapRegistry.setTableFilter(filter);
+	}
+	
+	public BinlogTableFilter getTableFilter() {
+		return tableFilter;
+	}
+	
+	/**
+	 * @return true if the table of table id is not accepted by the table filter.
+	 */
+	public boolean isTableSkipped(long tableId) {
+		return tableMapRegistry.isSkipped(tableId);
 	}
 	
 	public TableMapEventBody getTableMapEventBody(long tableId) {
-		return tableMapEventBodys.get(tableId);
+		return tableMapRegistry.get(tableId);
+	}
+	
+	/**
+	 * Get the row decoder plan of the table map, the plan is compiled at first time and cached 
+	 * until the table map of the table id is replaced.
+	 */
+	public RowDecoderPlan getRowDecoderPlan(TableMapEventBody tableMapEventBody) {
+		RowDecoderPlan plan = tableMapRegistry.getPlan(tableMapEventBody.getTableId());
+		if (plan != null && plan.getTableDefine() == tableMapEventBody.getTableDefine()) {
+			return plan;
+		}
+		plan = RowDecoderPlan.compile(tableMapEventBody.getTableDefine(), order, decodeString, defaultCharsetName);
+		tableMapRegistry.putPlan(tableMapEventBody, plan);
+		return plan;
+	}
+	
+	/*
+	https://dev.mysql.com/doc/internals/en/rows-event.html
+	  Version 0 written from MySQL 5.1.0 to 5.1.15 ;
+	  Version 1 written from MySQL 5.1.15 to 5.6.x ;
+	  Version 2 written from MySQL 5.6.x ;
+	*/ 
+	public static int getRowEventVersion(String serverVersion) {
+		if (ParserHelper.compareVersion(serverVersion, "5.6") < 0) {
+			if (ParserHelper.compareVersion(serverVersion, "5.1.15") < 0) {
+				return 0;
+			} else {
+				return 1;
+			}
+		} else {
+			return 2;
+		}
+	}
+	
+	/**
+	 * The rows event version of the binlog file, it's decided by server version.
+	 */
+	public int getRowEventVersion() {
+		if (rowEventVersion < 0) {
+			rowEventVersion = getRowEventVersion(serverVersion);
+		}
+		return rowEventVersion;
 	}
 	
 	public void setCommonHeaderLength(int length) {
@@ -138,16 +212,73 @@ public class BinlogFileMeta {
 	public void setDefaultCharsetName(String mysqlCharsetName) {
 		if (mysqlCharsetName != null)
 			defaultCharsetName = mysqlCharsetName;
+		tableMapRegistry.clearPlans();
 	}
 	
 	public void decodeString(boolean decode) {
 		decodeString = decode;
+		tableMapRegistry.clearPlans();
 	}
 	
 	public boolean decodeString() {
 		return decodeString;
 	}
 	
+	/**
+	 * Event bodies (except the table maps) are read from the mapped binlog file directly (no copy) 
+	 * when zeroCopy is true, the event bodies are not valid after the parser leaves their mapping 
+	 * window or is closed.
+	 */
+	public void zeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+	}
+	
+	public boolean zeroCopy() {
+		return zeroCopy;
+	}
+	
+	/**
+	 * Row-images of rows events are decoded at the first access, instead of when the event is read.
+	 */
+	public void lazyDecodeRows(boolean lazy) {
+		lazyDecodeRows = lazy;
+	}
+	
+	public boolean lazyDecodeRows() {
+		return lazyDecodeRows;
+	}
+	
+	/**
+	 * Only the common headers are read, the parser jumps to the next event without reading the 
+	 * event bodies (BinlogEvent.getBody() returns null), the table maps are not kept.
+	 */
+	public void headerOnly(boolean headerOnly) {
+		this.headerOnly = headerOnly;
+	}
+	
+	public boolean headerOnly() {
+		return headerOnly;
+	}
+	
+	/**
+	 * The position index of the binlog file, it's used by BinlogParser.seek(long) if it's set.
+	 */
+	public void setFileIndex(BinlogFileIndex index) {
+		fileIndex = index;
+	}
+	
+	public BinlogFileIndex getFileIndex() {
+		return fileIndex;
+	}
+	
+	public void setMappingWindowSize(long size) {
+		mappingWindowSize = size;
+	}
+	
+	public long getMappingWindowSize() {
+		return mappingWindowSize;
+	}
+	
 	public String getDefaultCharsetName() {
 		return defaultCharsetName;
 	}
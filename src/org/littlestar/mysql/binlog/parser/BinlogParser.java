@@ -22,9 +22,37 @@ import org.littlestar.mysql.binlog.event.BinlogEvent;
 
 public interface BinlogParser extends Closeable {
 	public BinlogEvent nextEvent() throws Throwable;
+	
+	/**
+	 * Read the next event into the reused event and its header, the event is only valid before 
+	 * the next call. The table maps are kept with their own headers.
+	 * @return the reused event.
+	 */
+	public BinlogEvent nextEvent(BinlogEvent reuse) throws Throwable;
+	
+	/**
+	 * Read the next event and pass it to the listener's callback, the event header and body views 
+	 * are reused by the parser, see BinlogEventListener.
+	 */
+	public void nextEvent(BinlogEventListener listener) throws Throwable;
+	
 	public boolean hasEvent();
 	public BinlogFileMeta getBinlogFileMeta();
 	public long getPosition();
+	
+	/**
+	 * Continue parsing at the checkpoint of the binlog file index, the table maps of the checkpoint 
+	 * are read again, so the rows events after the checkpoint can be decoded.
+	 */
+	public void seek(BinlogFileIndex.Checkpoint checkpoint) throws Throwable;
+	
+	/**
+	 * Continue parsing at the first event at or after the position. The table maps before the 
+	 * position are restored: the events from current position (or the checkpoint before the position
+	 * if the file index is set, or the start of binlog file) to the position are scanned, and only 
+	 * the TABLE_MAP_EVENTs are read.
+	 */
+	public void seek(long position) throws Throwable;
 	//public TableMapEventBody getTableMapEvent(long tableId);
 	
 }
@@ -56,12 +56,21 @@ public class BinlogParserBuilder {
 	// https://dev.mysql.com/doc/internals/en/binlog-event-header.html
 	// The binlog event header is either 13 (v1) or 19(v1+)
 	private BinlogFileMappedByteBuffer fileMappedBuffer;
+	private BinlogFileMappedReader fileReader;
 	private final String binlogFileName;
 	private ByteOrder order ;
 	private HashSet<EventType> eventFilter = null;
 	private Boolean decodeString = true;
 	private Boolean decodeEventBody = true;
+	private Boolean zeroCopy = false;
+	private Boolean lazyDecodeRows = false;
+	private Boolean headerOnly = false;
+	private long mappingWindowSize = BinlogFileMappedByteBuffer.DEFAULT_MAPPING_WINDOW_SIZE;
+	private BinlogFileMappingPool mappingPool = null;
+	private BinlogTableFilter tableFilter = null;
+	private BinlogFileIndex fileIndex = null;
 	private String defaultCharsetName = null;
+	private int maxIdleTransactions = 0;
 	
 	private BinlogParserBuilder(String binlogFileName) throws Throwable {
 		order = ByteOrder.nativeOrder();
@@ -102,43 +111,150 @@ public class BinlogParserBuilder {
 		return this;
 	}
 	
+	/**
+	 * Read event bodies from the mapped binlog file without copy, default is false (the bodies
+	 * are copied). Set true if each event is consumed before the next one is read, the window of 
+	 * an event is unmapped when the parser leaves it (see BinlogFileMappedByteBuffer.RetireListener).
+	 * The table maps are always copied.
+	 */
+	public BinlogParserBuilder zeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+		return this;
+	}
+	
+	/**
+	 * Decode row-images of rows events on demand (getRowImages() or rowImageIterator()), 
+	 * default is false. 
+	 */
+	public BinlogParserBuilder lazyDecodeRows(boolean lazy) {
+		lazyDecodeRows = lazy;
+		return this;
+	}
+	
+	/**
+	 * Scan the common headers only (type, timestamp, server id, size and positions), the event 
+	 * bodies are never read, default is false.
+	 */
+	public BinlogParserBuilder headerOnly(boolean headerOnly) {
+		this.headerOnly = headerOnly;
+		return this;
+	}
+	
+	/**
+	 * The size of memory mapping window (bytes), binlog file bigger than the window is mapped 
+	 * window by window, default is Integer.MAX_VALUE (2GB - 1).
+	 */
+	public BinlogParserBuilder withMappingWindowSize(long size) {
+		mappingWindowSize = size;
+		return this;
+	}
+	
+	/**
+	 * Share a bounded mapping pool with other parsers to cap the total mapped bytes.
+	 */
+	public BinlogParserBuilder withMappingPool(BinlogFileMappingPool pool) {
+		mappingPool = pool;
+		return this;
+	}
+	
+	/**
+	 * Skip the rows events of the tables which not accepted by the filter, the skipped rows events 
+	 * are returned without event body.
+	 */
+	public BinlogParserBuilder withTableFilter(BinlogTableFilter filter) {
+		tableFilter = filter;
+		return this;
+	}
+	
+	/**
+	 * @param patterns "schema.table" patterns, see BinlogTableFilter.
+	 */
+	public BinlogParserBuilder includeTables(String... patterns) {
+		if (tableFilter == null)
+			tableFilter = BinlogTableFilter.newFilter();
+		tableFilter.include(patterns);
+		return this;
+	}
+	
+	public BinlogParserBuilder excludeTables(String... patterns) {
+		if (tableFilter == null)
+			tableFilter = BinlogTableFilter.newFilter();
+		tableFilter.exclude(patterns);
+		return this;
+	}
+	
+	/**
+	 * Seek with the checkpoints of the binlog file index, see BinlogParser.seek(long).
+	 */
+	public BinlogParserBuilder withIndex(BinlogFileIndex index) {
+		fileIndex = index;
+		return this;
+	}
+	
+	/**
+	 * Evict the table maps not seen in the last n transactions, default is 0 (never evict).
+	 */
+	public BinlogParserBuilder evictIdleTableMaps(int transactions) {
+		maxIdleTransactions = transactions;
+		return this;
+	}
+	
 	public BinlogParserBuilder withCharSet(String defaultMysqlCharsetName) {
 		defaultCharsetName = defaultMysqlCharsetName;
 		return this;
 	}
 	
 	public BinlogParser build() throws Throwable {
-		fileMappedBuffer = new BinlogFileMappedByteBuffer(binlogFileName, order);
-		BinlogFileMeta fileMeta = getBinlogFileMeta();
-		fileMappedBuffer.close();
+		// The binlog file is opened (mapped) once, the parser reuses the reader of the file meta.
+		fileMappedBuffer = new BinlogFileMappedByteBuffer(binlogFileName, order, mappingWindowSize, mappingPool);
+		fileReader = new BinlogFileMappedReader(fileMappedBuffer);
+		BinlogFileMeta fileMeta;
+		try {
+			fileMeta = getBinlogFileMeta();
+		} catch (Throwable e) {
+			close();
+			throw e;
+		}
 		if (decodeString != null) {
 			fileMeta.decodeString(decodeString);
 		}
 		if (defaultCharsetName != null) {
 			fileMeta.setDefaultCharsetName(defaultCharsetName);
 		}
-		return BinlogParser4.newParser(fileMeta, eventFilter, decodeEventBody);
+		if (zeroCopy != null) {
+			fileMeta.zeroCopy(zeroCopy);
+		}
+		if (lazyDecodeRows != null) {
+			fileMeta.lazyDecodeRows(lazyDecodeRows);
+		}
+		if (headerOnly != null) {
+			fileMeta.headerOnly(headerOnly);
+		}
+		fileMeta.setMappingWindowSize(mappingWindowSize);
+		fileMeta.setTableFilter(tableFilter);
+		fileMeta.setFileIndex(fileIndex);
+		fileMeta.getTableMapRegistry().setMaxIdleTransactions(maxIdleTransactions);
+		return BinlogParser4.newParser(fileMeta, fileReader, eventFilter, decodeEventBody);
 	}
 	
 	private BinlogFileMeta getBinlogFileMeta() throws Throwable {
-		byte[] magicNumber = fileMappedBuffer.getBytes(BinlogFileMeta.MAGIC_NUMBER_LENGTH);
+		byte[] magicNumber = fileReader.getBytes(BinlogFileMeta.MAGIC_NUMBER_LENGTH);
 		if (!Arrays.equals(magicNumber, BinlogFileMeta.MAGIC_NUMBER)) {
-			close();
 			throw new IOException(
 					"Bad magic number: " + ParserHelper.getHexString(magicNumber) + ", it's not a binary log file.");
 		}
 		// Parsing the first event of binlog file.
-		int eventPos = fileMappedBuffer.getPosition();
+		long eventPos = fileReader.getPosition();
 		// 4 bytes : event timestamp --> not need skip.
-		fileMappedBuffer.skip(EventHeader.TIMESTAMP_LENGTH);
+		fileReader.skip(EventHeader.TIMESTAMP_LENGTH);
 		// 1 byte: event type
-		int typeCode = fileMappedBuffer.getUnsignedInteger(EventHeader.EVENT_TYPE_LENGTH); 
+		int typeCode = fileReader.getUnsignedInteger(EventHeader.EVENT_TYPE_LENGTH); 
 		EventType eventType = EventType.getEventType(typeCode);
 		// 4 bytes : server-id --> not need skip.
-		fileMappedBuffer.skip(EventHeader.SERVER_ID_LENGTH);
+		fileReader.skip(EventHeader.SERVER_ID_LENGTH);
 		// 4 bytes: event-size
-		int eventSize = fileMappedBuffer.getUnsignedInteger(EventHeader.EVENT_SIZE_LENGTH);
-		int eventNextPos = eventPos + eventSize;
+		int eventSize = fileReader.getUnsignedInteger(EventHeader.EVENT_SIZE_LENGTH);
+		long eventNextPos = eventPos + eventSize;
 		
 		BinlogFileMeta binlogFileMeta = new BinlogFileMeta(fileMappedBuffer.getFileName(), fileMappedBuffer.getByteOrder());
 		
@@ -150,46 +266,46 @@ public class BinlogParserBuilder {
 			// version 2,3 START_EVENT_V3 size: Header + Body: 19 + (2 + 50 + 4) = 75
 			if (eventSize > 69) {
 				commonHeaderLength = EventHeader.COMMON_HEADER_LENGTH_V3;
-				fileMappedBuffer.skip(skipBytes);
+				fileReader.skip(skipBytes);
 			}
 			binlogFileMeta.setCommonHeaderLength(commonHeaderLength);
 			//
-			int binlogVersion = fileMappedBuffer.getUnsignedInteger(StartEventV3Body.BINLOG_VERSION_LENGTH);
+			int binlogVersion = fileReader.getUnsignedInteger(StartEventV3Body.BINLOG_VERSION_LENGTH);
 			binlogFileMeta.setBinlogVersion(binlogVersion);
 			
-			String serverVersion = fileMappedBuffer.getString(StartEventV3Body.MYSQL_SERVER_VERSION_LENGTH).trim();
+			String serverVersion = fileReader.getString(StartEventV3Body.MYSQL_SERVER_VERSION_LENGTH).trim();
 			binlogFileMeta.setServerVersion(serverVersion);
 			
-			long createTimestampValue = fileMappedBuffer.getUnsignedInteger(StartEventV3Body.CREATE_TIMESTAMP_LENGTH) * 1000L;
+			long createTimestampValue = fileReader.getUnsignedInteger(StartEventV3Body.CREATE_TIMESTAMP_LENGTH) * 1000L;
 			binlogFileMeta.setCreateTimestamp(new Date(createTimestampValue));
 			
 		} else if (eventType.equals(EventType.FORMAT_DESCRIPTION_EVENT)) {
 			// version 4;
 			commonHeaderLength = EventHeader.COMMON_HEADER_LENGTH_V4;
-			fileMappedBuffer.skip(skipBytes);
+			fileReader.skip(skipBytes);
 			
 			// Parsing FORMAT_DESCRIPTION_EVENT evnet body ...
-			int binlogVersion = fileMappedBuffer.getUnsignedInteger(FormatDescriptionEventBody.BINLOG_VERSION_LENGTH);
+			int binlogVersion = fileReader.getUnsignedInteger(FormatDescriptionEventBody.BINLOG_VERSION_LENGTH);
 			binlogFileMeta.setBinlogVersion(binlogVersion);
 			
-			String serverVersion = fileMappedBuffer.getString(FormatDescriptionEventBody.MYSQL_SERVER_VERSION_LENGTH).trim();
+			String serverVersion = fileReader.getString(FormatDescriptionEventBody.MYSQL_SERVER_VERSION_LENGTH).trim();
 			binlogFileMeta.setServerVersion(serverVersion);
 			
-			long createTimestampValue = fileMappedBuffer.getUnsignedInteger(FormatDescriptionEventBody.CREATE_TIMESTAMP_LENGTH) * 1000L;
+			long createTimestampValue = fileReader.getUnsignedInteger(FormatDescriptionEventBody.CREATE_TIMESTAMP_LENGTH) * 1000L;
 			binlogFileMeta.setCreateTimestamp(new Date(createTimestampValue));
 
 			// version 4 header's length, it's always be 19, skip
-			fileMappedBuffer.skip(FormatDescriptionEventBody.EVENT_HEADER_LENGTH_LENGTH);
+			fileReader.skip(FormatDescriptionEventBody.EVENT_HEADER_LENGTH_LENGTH);
 			binlogFileMeta.setCommonHeaderLength(19);
 
-			int remainLength = eventNextPos - fileMappedBuffer.getPosition();
+			int remainLength = (int) (eventNextPos - fileReader.getPosition());
 			// EventBody = EventData(Post-header + Playload) + CheckSum, Please Reference BinlogEvent.java
 			//   - version 4 FD event's playload is 0, so EventData = Post-header;
 		    //   - binlog_checksum variable was added in MySQL 5.6.2: 
 			//     int FD event, 1 byte checksum algorithm + checksum value;
 			// So "checksum size" = "event size" - "common header size" - "post header size" - "playload size"
 			
-			byte[] remainBytes = fileMappedBuffer.getBytes(remainLength);
+			byte[] remainBytes = fileReader.getBytes(remainLength);
 			binlogFileMeta.setPostHeaderLengths(remainBytes);
 			
 			int postHeaderLength = binlogFileMeta.getPostHeaderLength(EventType.FORMAT_DESCRIPTION_EVENT);
@@ -205,7 +321,6 @@ public class BinlogParserBuilder {
 			}
 			binlogFileMeta.setPostHeaderLengths(eventPostHeaderLengths);
 		} else {
-			close();
 			throw new IOException("unknown binlog version, with the first event of '" + eventType.toString() + "'.");
 		}
 		return binlogFileMeta;
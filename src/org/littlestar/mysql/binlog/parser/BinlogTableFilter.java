@@ -0,0 +1,110 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.parser;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Schema/table include and exclude filter, a pattern is "schema.table" or "schema" (all tables of 
+ * the schema), '*' matches any characters, e.g. "test.*", "*.orders", "sales.order_*".
+ * 
+ * A table is accepted when it matches any include pattern (or no include pattern) and doesn't match 
+ * any exclude pattern. The filter is resolved to table ids at TABLE_MAP_EVENT, the rows events of 
+ * not accepted tables are skipped without reading the event body.
+ */
+public class BinlogTableFilter {
+	private final ArrayList<Pattern> includes = new ArrayList<Pattern>();
+	private final ArrayList<Pattern> excludes = new ArrayList<Pattern>();
+	private final ArrayList<String> includeNames = new ArrayList<String>();
+	private final ArrayList<String> excludeNames = new ArrayList<String>();
+	
+	public static BinlogTableFilter newFilter() {
+		return new BinlogTableFilter();
+	}
+	
+	/**
+	 * @param patterns table patterns, a pattern can be a list split by ';' or ','.
+	 */
+	public BinlogTableFilter include(String... patterns) {
+		addPatterns(includes, includeNames, patterns);
+		return this;
+	}
+	
+	public BinlogTableFilter exclude(String... patterns) {
+		addPatterns(excludes, excludeNames, patterns);
+		return this;
+	}
+	
+	public boolean isEmpty() {
+		return includes.isEmpty() & excludes.isEmpty();
+	}
+	
+	public boolean accept(String schemaName, String tableName) {
+		String name = schemaName + "." + tableName;
+		boolean accept = includes.isEmpty();
+		for (Pattern include : includes) {
+			if (include.matcher(name).matches()) {
+				accept = true;
+				break;
+			}
+		}
+		if (accept) {
+			for (Pattern exclude : excludes) {
+				if (exclude.matcher(name).matches()) {
+					return false;
+				}
+			}
+		}
+		return accept;
+	}
+	
+	private static void addPatterns(ArrayList<Pattern> list, ArrayList<String> names, String... patterns) {
+		if (patterns == null)
+			return;
+		for (String pattern : patterns) {
+			if (pattern == null)
+				continue;
+			for (String p : pattern.split("[;,]")) {
+				p = p.trim();
+				if (p.length() > 0) {
+					list.add(toPattern(p));
+					names.add(p);
+				}
+			}
+		}
+	}
+	
+	private static Pattern toPattern(String tablePattern) {
+		if (tablePattern.indexOf('.') < 0) {
+			tablePattern = tablePattern + ".*";
+		}
+		StringBuilder regex = new StringBuilder();
+		String[] parts = tablePattern.split("\\*", -1);
+		for (int i = 0; i < parts.length; i++) {
+			if (i > 0)
+				regex.append(".*");
+			regex.append(Pattern.quote(parts[i]));
+		}
+		return Pattern.compile(regex.toString());
+	}
+	
+	@Override
+	public String toString() {
+		return "include" + includeNames + " exclude" + excludeNames;
+	}
+}
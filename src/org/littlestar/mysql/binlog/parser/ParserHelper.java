@@ -16,7 +16,6 @@
 
 package org.littlestar.mysql.binlog.parser;
 
-import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
@@ -25,14 +24,25 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.littlestar.mysql.binlog.event.BinlogEvent;
 import org.littlestar.mysql.binlog.event.EventType;
 import org.littlestar.mysql.binlog.event.body.EventBody;
+import org.littlestar.mysql.binlog.event.body.helper.Collations;
 import org.littlestar.mysql.binlog.event.body.impl.RotateEventBody;
 import org.littlestar.mysql.binlog.event.body.impl.StopEventBody;
 
 public class ParserHelper {
+	private static final int MAX_STRING_BUFFER_SIZE = 64 * 1024;
+	private static final ConcurrentHashMap<String, Charset> charsetCache = new ConcurrentHashMap<String, Charset>();
+	private static final ThreadLocal<byte[]> stringBuffer = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[256];
+		}
+	};
+	
 	private ParserHelper() {
 	}
 
@@ -56,181 +66,95 @@ public class ParserHelper {
 		int value = b & 0xFF;
 		return value;
 	}
-
-	private static int getInt16(final byte[] bytes, final ByteOrder order) {
-		// if (bytes.length < 2) throw new NumberFormatException("Int16 at least 2 bytes.");
-		byte[] newBytes = bytes;
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		//little-endian, most of mysql server run on little-endian platform.
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1];
-		return (b1 << 8) | b0;
-	}
-
-	private static int getUInt16(final byte[] bytes, final ByteOrder order) {
-		int si = getInt16(bytes, order);
-		return si & 0xFFFF;
-	}
-
-	private static int getInt24(final byte[] bytes, final ByteOrder order) throws NumberFormatException {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2];
-		return (b2 << 16) | (b1 << 8) | b0;
+	
+	private static void checkLength(final int length) throws NumberFormatException {
+		if (length <= 0) {
+			throw new NumberFormatException("null");
+		} else if (length > 8) {
+			throw new NumberFormatException("unsupport int" + (length * 8) + " type");
+		}
 	}
+	
+	/*
+	 * Allocation-free readers: read an 1 to 8 bytes integer at [offset, offset + length) 
+	 * without copy, boxing or BigInteger, the position of buffer is not changed.
+	 * An unsigned 64-bit value is returned as it's two's complement long value.
+	 */
 
-	private static int getUInt24(final byte[] bytes, final ByteOrder order) {
-		int si = getInt24(bytes, order);
-		return si & 0xFFFFFF;
+	public static long getUnsignedLong(final byte[] buffer, final int offset, final int length, final ByteOrder order) {
+		checkLength(length);
+		long value = 0L;
+		if (order == ByteOrder.BIG_ENDIAN) {
+			for (int i = 0; i < length; i++) {
+				value = (value << 8) | (buffer[offset + i] & 0xFF);
+			}
+		} else { // little-endian, most of mysql server run on little-endian platform.
+			for (int i = length - 1; i >= 0; i--) {
+				value = (value << 8) | (buffer[offset + i] & 0xFF);
+			}
+		}
+		return value;
 	}
 	
-	private static long getInt32(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2] & 0xFF;
-		int b3 = newBytes[3];
-		return (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+	public static long getLong(final byte[] buffer, final int offset, final int length, final ByteOrder order) {
+		long value = getUnsignedLong(buffer, offset, length, order);
+		int shift = 64 - (length << 3);
+		return (value << shift) >> shift;
 	}
 	
-	private static long getUInt32(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2] & 0xFF;
-		long b3 = newBytes[3];
-		return (long) ((b3 << 24) | (b2 << 16) | (b1 << 8) | b0) & 0xFFFFFFFFL;
+	public static int getUnsignedInteger(final byte[] buffer, final int offset, final int length, final ByteOrder order) {
+		return (int) getUnsignedLong(buffer, offset, length, order);
 	}
-
-	private static long getInt40(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2] & 0xFF;
-		long b3 = newBytes[3] & 0xFFL;
-		long b4 = newBytes[4];
-		return (b4 << 32) | (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
-	}
-
-	private static long getUInt40(final byte[] bytes, final ByteOrder order) {
-		return getInt40(bytes, order) & 0xFFFFFFFFFFL;
-	}
-
-	private static long getInt48(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2] & 0xFF;
-		long b3 = newBytes[3] & 0xFFL;
-		long b4 = newBytes[4] & 0xFFL;
-		long b5 = newBytes[5];
-		return (b5 << 40) | (b4 << 32) | (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+	
+	public static int getInteger(final byte[] buffer, final int offset, final int length, final ByteOrder order) {
+		return (int) getLong(buffer, offset, length, order);
 	}
 	
-	private static long getUInt48(final byte[] bytes, final ByteOrder order) {
-		return getInt48(bytes, order) & 0xFFFFFFFFFFFFL;
+	public static long getUnsignedLong(final ByteBuffer buffer, final int offset, final int length, final ByteOrder order) {
+		if (buffer.order() == order) {
+			switch (length) {
+			case 1: return buffer.get(offset) & 0xFFL;
+			case 2: return buffer.getShort(offset) & 0xFFFFL;
+			case 4: return buffer.getInt(offset) & 0xFFFFFFFFL;
+			case 8: return buffer.getLong(offset);
+			default:
+				break;
+			}
+		}
+		checkLength(length);
+		long value = 0L;
+		if (order == ByteOrder.BIG_ENDIAN) {
+			for (int i = 0; i < length; i++) {
+				value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+			}
+		} else {
+			for (int i = length - 1; i >= 0; i--) {
+				value = (value << 8) | (buffer.get(offset + i) & 0xFF);
+			}
+		}
+		return value;
 	}
 	
-	private static long getInt56(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2] & 0xFF;
-		long b3 = newBytes[3] & 0xFFL;
-		long b4 = newBytes[4] & 0xFFL;
-		long b5 = newBytes[5] & 0xFFL;
-		long b6 = newBytes[6];
-		return (b6 << 48) | (b5 << 40) | (b4 << 32) | (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
+	public static long getLong(final ByteBuffer buffer, final int offset, final int length, final ByteOrder order) {
+		long value = getUnsignedLong(buffer, offset, length, order);
+		int shift = 64 - (length << 3);
+		return (value << shift) >> shift;
 	}
 	
-	private static long getUInt56(final byte[] bytes, final ByteOrder order) {
-		return getInt56(bytes, order) & 0xFFFFFFFFFFFFFFL;
+	public static int getUnsignedInteger(final ByteBuffer buffer, final int offset, final int length, final ByteOrder order) {
+		return (int) getUnsignedLong(buffer, offset, length, order);
 	}
 	
-	private static long getInt64(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		int b0 = newBytes[0] & 0xFF;
-		int b1 = newBytes[1] & 0xFF;
-		int b2 = newBytes[2] & 0xFF;
-		long b3 = newBytes[3] & 0xFFL;
-		long b4 = newBytes[4] & 0xFFL;
-		long b5 = newBytes[5] & 0xFFL;
-		long b6 = newBytes[6] & 0xFFL;
-		long b7 = newBytes[7];
-		return (b7 << 56) | (b6 << 48) | (b5 << 40) | (b4 << 32) | (b3 << 24) | (b2 << 16) | (b1 << 8) | b0;
-	}
-
-	private static BigInteger getUInt64(final byte[] bytes, final ByteOrder order) {
-		byte[] newBytes = bytes.clone();
-		if (order.equals(ByteOrder.BIG_ENDIAN))
-			newBytes = getReverse(bytes);
-		return new BigInteger(1, newBytes);
+	public static int getInteger(final ByteBuffer buffer, final int offset, final int length, final ByteOrder order) {
+		return (int) getLong(buffer, offset, length, order);
 	}
-
-	private static Number getSignedNumber(byte[] bytes, ByteOrder order) throws NumberFormatException {
-		int length = bytes.length;
-		if (length == 0) {
-			throw new NumberFormatException("null");
-		} else if (length == 1) {
-			return getInt(bytes[0]);
-		} else if (length == 2) {
-			return getInt16(bytes, order);
-		} else if (length == 3) {
-			return getInt24(bytes, order);
-		} else if (length == 4) {
-			return getInt32(bytes, order);
-		} else if (length == 5) {
-			return getInt40(bytes, order);
-		} else if (length == 6) {
-			return getInt48(bytes, order);
-		} else if (length == 7) {
-			return getInt56(bytes, order);
-		} else if (length == 8) {
-			return getInt64(bytes, order);
-		} else {
-			throw new NumberFormatException("unsupport int" + length * 8 + "type");
-		}
+	
+	public static double getDouble(final ByteBuffer buffer, final int offset, final ByteOrder order) {
+		return Double.longBitsToDouble(getLong(buffer, offset, 8, order));
 	}
 	
-	private static Number getUnsignedNumber(byte[] bytes, ByteOrder order) throws NumberFormatException {
-		int length = bytes.length;
-		if (length == 0) {
-			throw new NumberFormatException("null");
-		} else if (length == 1) {
-			return getUInt(bytes[0]);
-		} else if (length == 2) {
-			return getUInt16(bytes, order);
-		} else if (length == 3) {
-			return getUInt24(bytes, order);
-		} else if (length == 4) {
-			return getUInt32(bytes, order);
-		} else if (length == 5) {
-			return getUInt40(bytes, order);
-		} else if (length == 6) {
-			return getUInt48(bytes, order);
-		} else if (length == 7) {
-			return getUInt56(bytes, order);
-		} else if (length == 8) {
-			return getUInt64(bytes, order);
-		} else {
-			throw new NumberFormatException("unsupport int" + (length * 8) + " type");
-		}
+	public static float getFloat(final ByteBuffer buffer, final int offset, final ByteOrder order) {
+		return Float.intBitsToFloat(getInteger(buffer, offset, 4, order));
 	}
 
 	public static int getInteger(byte b) {
@@ -242,31 +166,27 @@ public class ParserHelper {
 	}
 
 	public static int getInteger(byte[] bytes, ByteOrder order) {
-		return getSignedNumber(bytes, order).intValue();
+		return getInteger(bytes, 0, bytes.length, order);
 	}
 
 	public static int getUnsignedInteger(byte[] bytes, ByteOrder order) {
-		return ParserHelper.getUnsignedNumber(bytes, order).intValue();
+		return getUnsignedInteger(bytes, 0, bytes.length, order);
 	}
 
 	public static long getLong(byte[] bytes, ByteOrder order) {
-		return getSignedNumber(bytes, order).longValue();
+		return getLong(bytes, 0, bytes.length, order);
 	}
 
 	public static long getUnsignedLong(byte[] bytes, ByteOrder order) {
-		return getUnsignedNumber(bytes, order).longValue();
+		return getUnsignedLong(bytes, 0, bytes.length, order);
 	}
 
 	public static double getDouble(byte[] bytes, ByteOrder order) {
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		buffer.order(order);
-		return buffer.getDouble();
+		return Double.longBitsToDouble(getLong(bytes, 0, 8, order));
 	}
 
 	public static float getFloat(byte[] bytes, ByteOrder order) {
-		ByteBuffer buffer = ByteBuffer.wrap(bytes);
-		buffer.order(order);
-		return buffer.getFloat();
+		return Float.intBitsToFloat(getInteger(bytes, 0, 4, order));
 	}
 	
 	public static String getString(byte[] bytes, String mysqlCharsetName) {
@@ -278,22 +198,46 @@ public class ParserHelper {
 		return new String(bytes, charset);
 	}
 	
+	/**
+	 * @return the java charset of MySQL character set name, UTF-8 if the name is null, binary or
+	 *         not supported.
+	 */
 	public static Charset getCharset(String mysqlCharsetName) {
 		if (mysqlCharsetName == null) {
 			return StandardCharsets.UTF_8;
 		}
-		switch (mysqlCharsetName.trim().toLowerCase()) {
-		case "gbk":
-			return Charset.forName("gbk");
-		case "latin1":
-			return StandardCharsets.ISO_8859_1;
-		case "gb2312":
-			return Charset.forName("gb2312");
-		case "ucs2":
-			return StandardCharsets.UTF_16;
-		default:
-			return StandardCharsets.UTF_8;
+		Charset charset = charsetCache.get(mysqlCharsetName);
+		if (charset == null) {
+			charset = Collations.getJavaCharset(mysqlCharsetName);
+			if (charset == null) {
+				charset = StandardCharsets.UTF_8;
+			}
+			charsetCache.put(mysqlCharsetName, charset);
 		}
+		return charset;
+	}
+	
+	/**
+	 * Decode the bytes of buffer [from, to) to string. The event bodies are read-only buffers (which
+	 * have no accessible array), the bytes are copied to a per-thread reusable buffer and decoded by
+	 * String, it's faster than a CharsetDecoder reading the buffer.
+	 */
+	public static String getString(final ByteBuffer buffer, int from, int to, Charset charset) {
+		int length = to - from;
+		byte[] raw;
+		if (length > MAX_STRING_BUFFER_SIZE) {
+			raw = new byte[length];
+		} else {
+			raw = stringBuffer.get();
+			if (raw.length < length) {
+				raw = new byte[Math.max(length, raw.length * 2)];
+				stringBuffer.set(raw);
+			}
+		}
+		ByteBuffer src = buffer.duplicate();
+		src.position(from);
+		src.get(raw, 0, length);
+		return new String(raw, 0, length, charset);
 	}
 	
 	public static String getString(byte[] bytes) {
@@ -416,6 +360,44 @@ public class ParserHelper {
 		}
 	}
 
+	/**
+	 * The size of a length encoded integer, include the first byte: 1, 3, 4 or 9 bytes.
+	 */
+	public static int getPackedIntegerSize(final byte firstByte) {
+		int b = getUnsignedInteger(firstByte);
+		if (b < 0xfb) {
+			return 1;
+		} else if (b == 0xfc) {
+			return 3;
+		} else if (b == 0xfd) {
+			return 4;
+		} else if (b == 0xfe) {
+			return 9;
+		} else {
+			return -1;
+		}
+	}
+	
+	/**
+	 * Allocation-free reader of length encoded integer, the size of the integer is
+	 * getPackedIntegerSize(buffer[from]).
+	 */
+	public static long getPackedLong(final byte[] buffer, final int from, final ByteOrder order) {
+		int size = getPackedIntegerSize(buffer[from]);
+		if (size == 1) {
+			return getUInt(buffer[from]);
+		}
+		return getUnsignedLong(buffer, from + 1, size - 1, order);
+	}
+	
+	public static long getPackedLong(final ByteBuffer buffer, final int from, final ByteOrder order) {
+		int size = getPackedIntegerSize(buffer.get(from));
+		if (size == 1) {
+			return getUInt(buffer.get(from));
+		}
+		return getUnsignedLong(buffer, from + 1, size - 1, order);
+	}
+	
 	/**
 	 * https://dev.mysql.com/doc/internals/en/integer.html#packet-Protocol::LengthEncodedInteger
 	 * 
@@ -427,6 +409,22 @@ public class ParserHelper {
 		return Arrays.copyOfRange(buffer, from, (int) pkgLen + from);
 	}
 
+	public static byte[] getPackedInteger(final ByteBuffer buffer, int from) {
+		int pkgLen = getPackedIntegerLength(buffer.get(from));
+		return getBytes(buffer, from, pkgLen + from);
+	}
+
+	/**
+	 * Copy bytes [from, to) of buffer with one bulk get of a duplicate, the position of buffer is not changed.
+	 */
+	public static byte[] getBytes(final ByteBuffer buffer, int from, int to) {
+		byte[] raw = new byte[to - from];
+		ByteBuffer dup = buffer.duplicate();
+		dup.position(from);
+		dup.get(raw);
+		return raw;
+	}
+
 	public static String lpad(String s, int len, char pad) {
 		StringBuilder padded = new StringBuilder();
 		while ((s.length() + padded.length()) < len) {
@@ -459,11 +457,23 @@ public class ParserHelper {
 	public static Object[] getPackedString(final byte[] data, final int from, ByteOrder order) {
 		Object[] retVal = new Object[2];
 		int pos = from;
-		byte[] rawStringLength = getPackedInteger(data, pos);
-		pos += rawStringLength.length;
-		int stringLength = getUnsignedInteger(rawStringLength, order);
+		int stringLengthSize = getPackedIntegerSize(data[pos]);
+		int stringLength = (int) getPackedLong(data, pos, order);
+		pos += stringLengthSize;
 		byte[] rawStringData = Arrays.copyOfRange(data, pos, pos += stringLength);
-		retVal[0] = (rawStringLength.length + rawStringData.length);
+		retVal[0] = (stringLengthSize + rawStringData.length);
+		retVal[1] = rawStringData;
+		return retVal;
+	}
+
+	public static Object[] getPackedString(final ByteBuffer data, final int from, ByteOrder order) {
+		Object[] retVal = new Object[2];
+		int pos = from;
+		int stringLengthSize = getPackedIntegerSize(data.get(pos));
+		int stringLength = (int) getPackedLong(data, pos, order);
+		pos += stringLengthSize;
+		byte[] rawStringData = getBytes(data, pos, pos += stringLength);
+		retVal[0] = (stringLengthSize + rawStringData.length);
 		retVal[1] = rawStringData;
 		return retVal;
 	}
@@ -486,6 +496,17 @@ public class ParserHelper {
 		return Arrays.copyOfRange(bytes, from, eofPos);
 	}
 
+	public static byte[] getNulTerminatedString(final ByteBuffer buffer, final int from, final int to) {
+		if (from >= to)
+			return null;
+		int eofPos = from;
+		while (eofPos < to) {
+			if (buffer.get(eofPos++) == (byte) 0x00)
+				break;
+		}
+		return getBytes(buffer, from, eofPos);
+	}
+
 	public static byte[] getNulTerminatedString(final byte[] bytes, final int from) {
 		return getNulTerminatedString(bytes, from, bytes.length);
 	}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.littlestar.mysql.binlog.event.body.helper.RowDecoderPlan;
+import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+
+/**
+ * The current table maps of a binlog file, keyed by table id (primitive long, open addressing with
+ * linear probing), with the row decoder plan and the table filter result of each table id.
+ *
+ * Table ids increase on servers with table definition cache churn, the table maps which are not
+ * seen in the last n transactions can be evicted at transaction boundaries (XID or GTID event),
+ * see setMaxIdleTransactions(int). MySQL writes the table maps of a transaction before its rows
+ * events, so an evicted table map is written again when the table is used.
+ *
+ * Mutations and snapshot() are synchronized, other threads should read the registry with snapshot();
+ * get(long) is not synchronized and meant for the parser thread. getPlan(long) is synchronized, the
+ * lazy decoded rows events could be decoded by other threads.
+ */
+public class TableMapRegistry {
+	private static final int DEFAULT_CAPACITY = 64;
+
+	private long[] tableIds;
+	private TableMapEventBody[] tableMaps; // null if the slot is free.
+	private RowDecoderPlan[] plans;
+	private boolean[] skipped;
+	private long[] lastSeen; // the transaction sequence of last put.
+	private int size = 0;
+	private long transaction = 0L;
+	private int maxIdleTransactions = 0;
+
+	public TableMapRegistry() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Evict the table maps which are not seen in the last n transactions, 0 (default) is never evict.
+	 */
+	public synchronized void setMaxIdleTransactions(int transactions) {
+		if (transactions < 0) {
+			throw new IllegalArgumentException("max idle transactions must not be negative.");
+		}
+		maxIdleTransactions = transactions;
+	}
+
+	public int getMaxIdleTransactions() {
+		return maxIdleTransactions;
+	}
+
+	/**
+	 * Put (or replace) the table map of its table id.
+	 * @param skip the table is not accepted by the table filter.
+	 */
+	public synchronized void put(TableMapEventBody tableMap, boolean skip) {
+		long tableId = tableMap.getTableId();
+		int slot = find(tableId);
+		if (tableMaps[slot] == null) {
+			if ((size + 1) * 4 > tableIds.length * 3) { // load factor 0.75
+				resize(tableIds.length * 2);
+				slot = find(tableId);
+			}
+			tableIds[slot] = tableId;
+			size++;
+		} else if (tableMaps[slot].getTableDefine() != tableMap.getTableDefine()) {
+			plans[slot] = null;
+		}
+		tableMaps[slot] = tableMap;
+		skipped[slot] = skip;
+		lastSeen[slot] = transaction;
+	}
+
+	public TableMapEventBody get(long tableId) {
+		return tableMaps[find(tableId)];
+	}
+
+	/**
+	 * @return true if the table of table id is not accepted by the table filter.
+	 */
+	public boolean isSkipped(long tableId) {
+		int slot = find(tableId);
+		return tableMaps[slot] != null && skipped[slot];
+	}
+
+	/**
+	 * @return the cached plan of table id, null if not compiled.
+	 */
+	public synchronized RowDecoderPlan getPlan(long tableId) {
+		return plans[find(tableId)];
+	}
+
+	/**
+	 * Cache the plan of table map, it's ignored if the table map is not current table map of the table id.
+	 */
+	public synchronized void putPlan(TableMapEventBody tableMap, RowDecoderPlan plan) {
+		int slot = find(tableMap.getTableId());
+		if (tableMaps[slot] == tableMap) {
+			plans[slot] = plan;
+		}
+	}
+
+	public synchronized void clearPlans() {
+		for (int i = 0; i < plans.length; i++) {
+			plans[i] = null;
+		}
+	}
+
+	/**
+	 * Apply the table filter to the registered table maps.
+	 */
+	public synchronized void setTableFilter(BinlogTableFilter filter) {
+		for (int i = 0; i < tableMaps.length; i++) {
+			if (tableMaps[i] != null) {
+				skipped[i] = filter != null && !filter.accept(tableMaps[i].getSchemaName(), tableMaps[i].getTableName());
+			}
+		}
+	}
+
+	/**
+	 * Called at the transaction boundary, evict the idle table maps if max idle transactions is set.
+	 */
+	public synchronized void endTransaction() {
+		transaction++;
+		if (maxIdleTransactions <= 0 || size == 0)
+			return;
+		long oldest = transaction - maxIdleTransactions;
+		boolean evict = false;
+		for (int i = 0; i < tableMaps.length && !evict; i++) {
+			evict = tableMaps[i] != null && lastSeen[i] < oldest;
+		}
+		if (evict) {
+			rehash(tableIds.length, oldest);
+		}
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void clear() {
+		allocate(DEFAULT_CAPACITY);
+		size = 0;
+	}
+
+	/**
+	 * @return a consistent copy of the table maps, keyed by table id.
+	 */
+	public synchronized Map<Long, TableMapEventBody> snapshot() {
+		HashMap<Long, TableMapEventBody> snapshot = new HashMap<Long, TableMapEventBody>(size * 2);
+		for (int i = 0; i < tableMaps.length; i++) {
+			if (tableMaps[i] != null) {
+				snapshot.put(tableIds[i], tableMaps[i]);
+			}
+		}
+		return Collections.unmodifiableMap(snapshot);
+	}
+
+	// the slot of table id, or the free slot to put it.
+	private int find(long tableId) {
+		final long[] ids = tableIds;
+		final TableMapEventBody[] maps = tableMaps;
+		final int mask = ids.length - 1;
+		int slot = hash(tableId) & mask;
+		while (maps[slot] != null && ids[slot] != tableId) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int hash(long tableId) {
+		int h = (int) (tableId ^ (tableId >>> 32));
+		return h * 0x9E3779B9;
+	}
+
+	private void resize(int capacity) {
+		rehash(capacity, Long.MIN_VALUE);
+	}
+
+	// rebuild the table, drop the table maps last seen before the oldest transaction.
+	private void rehash(int capacity, long oldest) {
+		long[] oldTableIds = tableIds;
+		TableMapEventBody[] oldTableMaps = tableMaps;
+		RowDecoderPlan[] oldPlans = plans;
+		boolean[] oldSkipped = skipped;
+		long[] oldLastSeen = lastSeen;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldTableMaps.length; i++) {
+			if (oldTableMaps[i] != null && oldLastSeen[i] >= oldest) {
+				int slot = find(oldTableIds[i]);
+				tableIds[slot] = oldTableIds[i];
+				tableMaps[slot] = oldTableMaps[i];
+				plans[slot] = oldPlans[i];
+				skipped[slot] = oldSkipped[i];
+				lastSeen[slot] = oldLastSeen[i];
+				size++;
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		tableIds = new long[capacity];
+		tableMaps = new TableMapEventBody[capacity];
+		plans = new RowDecoderPlan[capacity];
+		skipped = new boolean[capacity];
+		lastSeen = new long[capacity];
+	}
+}
@@ -17,6 +17,7 @@
 package org.littlestar.mysql.binlog.parser.impl;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.HashSet;
 
@@ -25,25 +26,49 @@ import org.littlestar.mysql.binlog.event.EventType;
 import org.littlestar.mysql.binlog.event.body.EventBody;
 import org.littlestar.mysql.binlog.event.body.EventBodyFactory;
 import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+import org.littlestar.mysql.binlog.event.body.impl.XidEventBody;
 import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.event.view.GtidEventView;
+import org.littlestar.mysql.binlog.event.view.QueryEventView;
+import org.littlestar.mysql.binlog.event.view.RowsEventView;
 import org.littlestar.mysql.binlog.parser.BinlogFileMappedByteBuffer;
+import org.littlestar.mysql.binlog.parser.BinlogFileMappedReader;
+import org.littlestar.mysql.binlog.parser.BinlogEventListener;
+import org.littlestar.mysql.binlog.parser.BinlogFileIndex;
 import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
 import org.littlestar.mysql.binlog.parser.BinlogParser;
 
 public class BinlogParser4 implements BinlogParser {
 	private final BinlogFileMappedByteBuffer fileMappedBuffer;
+	private final BinlogFileMappedReader reader;
 	private final BinlogFileMeta binlogFileMeta;
 	private ByteOrder order ;
 	private boolean isDecodeBody = true;
 	private HashSet<EventType> eventFilter = null;
+	private boolean gtidBoundary = false;
+	// flyweights of nextEvent(BinlogEventListener), created at the first call.
+	private EventHeader listenerHeader = null;
+	private RowsEventView rowsView;
+	private QueryEventView queryView;
+	private GtidEventView gtidView;
 
 	private BinlogParser4(final BinlogFileMeta binlogFileMeta) throws Throwable {
+		this(binlogFileMeta, new BinlogFileMappedReader(new BinlogFileMappedByteBuffer(binlogFileMeta.getFile().toString(),
+				binlogFileMeta.getByteOrder(), binlogFileMeta.getMappingWindowSize())));
+	}
+	
+	/**
+	 * Parse the binlog file with the opened reader (the file is not opened again), the parser owns the 
+	 * reader's file after this call and closes it when the parser closes.
+	 */
+	private BinlogParser4(final BinlogFileMeta binlogFileMeta, final BinlogFileMappedReader reader) {
 		if (order != null) {
 			this.order = ByteOrder.nativeOrder();
 		}
 		this.binlogFileMeta = binlogFileMeta;
-		fileMappedBuffer = new BinlogFileMappedByteBuffer(binlogFileMeta.getFile().toString(), binlogFileMeta.getByteOrder());
-		fileMappedBuffer.skip(BinlogFileMeta.MAGIC_NUMBER_LENGTH);
+		this.reader = reader;
+		fileMappedBuffer = reader.getHandle();
+		reader.setPosition(BinlogFileMeta.MAGIC_NUMBER_LENGTH);
 	}
 	
 	public static BinlogParser4 newParser(final BinlogFileMeta binlogFileMeta, HashSet<EventType> eventFilter)
@@ -66,6 +91,15 @@ public class BinlogParser4 implements BinlogParser {
 		return parser;
 	}
 	
+	public static BinlogParser4 newParser(final BinlogFileMeta binlogFileMeta, final BinlogFileMappedReader reader,
+			HashSet<EventType> eventFilter, boolean isDecode) {
+		BinlogParser4 parser = new BinlogParser4(binlogFileMeta, reader);
+		parser.setDecodeBody(isDecode);
+		if (eventFilter != null)
+			parser.setEventFilter(eventFilter);
+		return parser;
+	}
+	
 	private void setDecodeBody(boolean isDecode) {
 		isDecodeBody  = isDecode;
 	}
@@ -87,23 +121,138 @@ public class BinlogParser4 implements BinlogParser {
 	
 	@Override
 	public BinlogEvent nextEvent() throws Throwable {
-		EventHeader eventHeader = getEventHeader();
-		int nextPos = (int) eventHeader.getNextPosition();
+		return nextEvent(new BinlogEvent());
+	}
+	
+	@Override
+	public BinlogEvent nextEvent(BinlogEvent reuse) throws Throwable {
+		long startPos = reader.getPosition();
+		EventHeader eventHeader = reuse.getHeader();
+		if (eventHeader == null || eventHeader.getEventHeaderLength() != binlogFileMeta.getCommonHeaderLength()) {
+			eventHeader = new EventHeader(binlogFileMeta.getCommonHeaderLength());
+			reuse.setHeader(eventHeader);
+		}
+		getEventHeader(eventHeader);
+		if (binlogFileMeta.headerOnly()) {
+			// jump to the next event, the body is never read.
+			reader.setPosition(startPos + eventHeader.getEventSize());
+			reuse.setBody(null);
+			return reuse;
+		}
+		// Not the log pos of header: it's the position in master's binlog for relay log, 
+		// and it's 4 bytes, can't over 4GB.
+		long nextPos = startPos + eventHeader.getEventSize();
 		EventBody eventBody = null;
 		try {
-			if (eventFilter != null) {
-				if (eventFilter.contains(eventHeader.getEventType())) {
+			EventType eventType = eventHeader.getEventType();
+			checkTransactionBoundary(eventType);
+			if (eventFilter == null || eventFilter.contains(eventType)) {
+				// rows event of the tables not accepted by table filter: return without body.
+				if (eventType == EventType.TABLE_MAP_EVENT) {
+					// the table map is kept by the file meta, it can't refer to the reused header.
+					eventBody = getEventBody(new EventHeader(eventHeader));
+				} else if (!(eventType.isRowsEvent() && binlogFileMeta.isTableSkipped(getTableId(startPos, eventType)))) {
 					eventBody = getEventBody(eventHeader);
 				}
-			} else {
-				eventBody = getEventBody(eventHeader);
 			}
 		} catch (Throwable e) {
 			throw e;
 		} finally {
-			fileMappedBuffer.setPosition(nextPos);
+			reader.setPosition(nextPos);
 		}
-		return new BinlogEvent(eventHeader, eventBody);
+		reuse.setBody(eventBody);
+		return reuse;
+	}
+	
+	@Override
+	public void nextEvent(BinlogEventListener listener) throws Throwable {
+		if (listenerHeader == null) {
+			listenerHeader = new EventHeader(binlogFileMeta.getCommonHeaderLength());
+			rowsView = new RowsEventView(binlogFileMeta);
+			queryView = new QueryEventView(binlogFileMeta);
+			gtidView = new GtidEventView(binlogFileMeta);
+		}
+		long startPos = reader.getPosition();
+		EventHeader eventHeader = getEventHeader(listenerHeader);
+		long nextPos = startPos + eventHeader.getEventSize();
+		if (binlogFileMeta.headerOnly()) {
+			reader.setPosition(nextPos);
+			listener.onEvent(eventHeader, null);
+			return;
+		}
+		try {
+			EventType eventType = eventHeader.getEventType();
+			checkTransactionBoundary(eventType);
+			if (eventFilter != null && !eventFilter.contains(eventType)) {
+				listener.onEvent(eventHeader, null);
+			} else if (!isDecodeBody) {
+				listener.onEvent(eventHeader, getEventBody(new EventHeader(eventHeader)));
+			} else {
+				switch (eventType) {
+				case TABLE_MAP_EVENT:
+					listener.onTableMap(eventHeader, getTableMapEventBody(eventHeader));
+					break;
+				case WRITE_ROWS_EVENT_V1:
+				case UPDATE_ROWS_EVENT_V1:
+				case DELETE_ROWS_EVENT_V1:
+				case WRITE_ROWS_EVENT:
+				case UPDATE_ROWS_EVENT:
+				case DELETE_ROWS_EVENT:
+					if (binlogFileMeta.isTableSkipped(getTableId(startPos, eventType))) {
+						listener.onEvent(eventHeader, null);
+					} else {
+						rowsView.wrap(eventHeader, reader.getSlice(eventHeader.getEventBodyLength()));
+						listener.onRows(eventHeader, rowsView);
+					}
+					break;
+				case QUERY_EVENT:
+					queryView.wrap(eventHeader, reader.getSlice(eventHeader.getEventBodyLength()));
+					listener.onQuery(eventHeader, queryView);
+					break;
+				case XID_EVENT:
+					listener.onXid(eventHeader, reader.getUnsignedLong(XidEventBody.XID_LENGTH));
+					break;
+				case GTID_LOG_EVENT:
+				case ANONYMOUS_GTID_LOG_EVENT:
+					gtidView.wrap(eventHeader, reader.getSlice(eventHeader.getEventBodyLength()));
+					listener.onGtid(eventHeader, gtidView);
+					break;
+				default:
+					listener.onEvent(eventHeader, getEventBody(new EventHeader(eventHeader)));
+					break;
+				}
+			}
+		} finally {
+			reader.setPosition(nextPos);
+		}
+	}
+	
+	/**
+	 * Transaction boundary: idle table maps can be evicted. GTID events start each transaction
+	 * from 5.6, XID events are the boundaries of the binlog files without GTID events.
+	 */
+	private void checkTransactionBoundary(EventType eventType) {
+		if (eventType == EventType.GTID_LOG_EVENT || eventType == EventType.ANONYMOUS_GTID_LOG_EVENT) {
+			gtidBoundary = true;
+			binlogFileMeta.getTableMapRegistry().endTransaction();
+		} else if (eventType == EventType.XID_EVENT && !gtidBoundary) {
+			binlogFileMeta.getTableMapRegistry().endTransaction();
+		}
+	}
+	
+	/**
+	 * The table map of the listener: the current table map of the table id is passed if the event
+	 * body is not changed, otherwise the table map is read with a copy of the reused header.
+	 */
+	private TableMapEventBody getTableMapEventBody(final EventHeader eventHeader) throws IOException {
+		long pos = reader.getPosition();
+		TableMapEventBody current = binlogFileMeta.getTableMapEventBody(
+				reader.getUnsignedLong(pos, binlogFileMeta.getPostHeaderLength(EventType.TABLE_MAP_EVENT) == 6 ? 4 : 6));
+		if (current != null && current.isSameBody(reader.getSlice(pos, eventHeader.getEventBodyLength()))) {
+			binlogFileMeta.putTableMapEventBody(current);
+			return current;
+		}
+		return (TableMapEventBody) getEventBody(new EventHeader(eventHeader));
 	}
 
 	@Override
@@ -117,7 +266,7 @@ public class BinlogParser4 implements BinlogParser {
 	 * 
 	 */
 	public boolean hasEvent(boolean withCheck) {
-		if (fileMappedBuffer.remaining(withCheck) < binlogFileMeta.getCommonHeaderLength())
+		if (reader.remaining(withCheck) < binlogFileMeta.getCommonHeaderLength())
 			return false;
 		return true;
 	}
@@ -129,7 +278,63 @@ public class BinlogParser4 implements BinlogParser {
 	
 	@Override
 	public long getPosition() {
-		return fileMappedBuffer.getPosition();
+		return reader.getPosition();
+	}
+	
+	@Override
+	public void seek(BinlogFileIndex.Checkpoint checkpoint) throws Throwable {
+		binlogFileMeta.getTableMapRegistry().clear();
+		if (isDecodeBody && !binlogFileMeta.headerOnly()) {
+			for (long position : checkpoint.getTableMapPositions()) {
+				readTableMap(position);
+			}
+		}
+		reader.setPosition(checkpoint.getPosition());
+	}
+	
+	@Override
+	public void seek(long position) throws Throwable {
+		long current = reader.getPosition();
+		BinlogFileIndex index = binlogFileMeta.getFileIndex();
+		BinlogFileIndex.Checkpoint checkpoint = index == null ? null : index.seekPosition(position);
+		if (checkpoint != null && (position < current || checkpoint.getPosition() > current)) {
+			seek(checkpoint);
+		} else if (position < current) {
+			binlogFileMeta.getTableMapRegistry().clear();
+			reader.setPosition(BinlogFileMeta.MAGIC_NUMBER_LENGTH);
+		}
+		// scan the headers to the position, read the table maps only.
+		EventHeader eventHeader = new EventHeader(binlogFileMeta.getCommonHeaderLength());
+		while (reader.getPosition() < position && hasEvent()) {
+			long startPos = reader.getPosition();
+			getEventHeader(eventHeader);
+			EventType eventType = eventHeader.getEventType();
+			checkTransactionBoundary(eventType);
+			if (eventType == EventType.TABLE_MAP_EVENT && isDecodeBody && !binlogFileMeta.headerOnly()) {
+				getEventBody(new EventHeader(eventHeader));
+			}
+			reader.setPosition(startPos + eventHeader.getEventSize());
+		}
+	}
+	
+	/**
+	 * Read the TABLE_MAP_EVENT at the position into the file meta.
+	 */
+	private void readTableMap(long position) throws IOException {
+		reader.setPosition(position);
+		EventHeader eventHeader = getEventHeader(new EventHeader(binlogFileMeta.getCommonHeaderLength()));
+		if (eventHeader.getEventType() != EventType.TABLE_MAP_EVENT) {
+			throw new IOException("Event at position " + position + " is not a TABLE_MAP_EVENT: "
+					+ eventHeader.getEventType() + ".");
+		}
+		getEventBody(eventHeader);
+	}
+	
+	/**
+	 * The thread-safe handle of the mapped binlog file.
+	 */
+	public BinlogFileMappedByteBuffer getFileMappedBuffer() {
+		return fileMappedBuffer;
 	}
 	
 	/** 
@@ -143,23 +348,30 @@ public class BinlogParser4 implements BinlogParser {
 	 *   4              log pos
 	 *   2              flags
 	 */
-	private EventHeader getEventHeader() {
-		int startPos = fileMappedBuffer.getPosition();
-		long eventTimetamp = fileMappedBuffer.getUnsignedLong(EventHeader.TIMESTAMP_LENGTH);
-		int typeCode = fileMappedBuffer.getUnsignedInteger(EventHeader.EVENT_TYPE_LENGTH);
+	private EventHeader getEventHeader(final EventHeader eventHeader) throws IOException {
+		long startPos = reader.getPosition();
+		long pos = startPos;
+		long eventTimetamp = reader.getUnsignedLong(pos, EventHeader.TIMESTAMP_LENGTH);
+		pos += EventHeader.TIMESTAMP_LENGTH;
+		int typeCode = reader.getUnsignedInteger(pos, EventHeader.EVENT_TYPE_LENGTH);
+		pos += EventHeader.EVENT_TYPE_LENGTH;
 		EventType eventType = EventType.getEventType(typeCode);
-		long serverId = fileMappedBuffer.getUnsignedLong(EventHeader.SERVER_ID_LENGTH);
-		int eventSize = fileMappedBuffer.getUnsignedInteger(EventHeader.EVENT_SIZE_LENGTH);
+		long serverId = reader.getUnsignedLong(pos, EventHeader.SERVER_ID_LENGTH);
+		pos += EventHeader.SERVER_ID_LENGTH;
+		int eventSize = reader.getUnsignedInteger(pos, EventHeader.EVENT_SIZE_LENGTH);
+		pos += EventHeader.EVENT_SIZE_LENGTH;
 		int commonHeaderLength = binlogFileMeta.getCommonHeaderLength();
 		long eventNextPos = -1L;
 		int flags = -1;
 		if (commonHeaderLength == EventHeader.COMMON_HEADER_LENGTH_V4) { // v1+
-			eventNextPos = fileMappedBuffer.getUnsignedLong(EventHeader.NEXT_POS_LENGTH);
-			flags = fileMappedBuffer.getUnsignedInteger(EventHeader.FLAGS_LENGTH);
+			eventNextPos = reader.getUnsignedLong(pos, EventHeader.NEXT_POS_LENGTH);
+			pos += EventHeader.NEXT_POS_LENGTH;
+			flags = reader.getUnsignedInteger(pos, EventHeader.FLAGS_LENGTH);
+			pos += EventHeader.FLAGS_LENGTH;
 		} else if (commonHeaderLength == EventHeader.COMMON_HEADER_LENGTH_V1) {
 			eventNextPos = startPos + eventSize;
 		}
-		EventHeader eventHeader = new EventHeader(commonHeaderLength);
+		reader.setPosition(pos);
 		eventHeader.setTimestamp(eventTimetamp * 1000L);
 		eventHeader.setEventType(eventType);
 		eventHeader.setServerId(serverId);
@@ -169,9 +381,25 @@ public class BinlogParser4 implements BinlogParser {
 		return eventHeader;
 	}
 	
-	private EventBody getEventBody(final EventHeader eventHeader) {
+	/**
+	 * Read the table id of rows event from the post-header without reading the event body.
+	 */
+	private long getTableId(long eventStartPos, EventType eventType) throws IOException {
+		long pos = eventStartPos + binlogFileMeta.getCommonHeaderLength();
+		int length = binlogFileMeta.getPostHeaderLength(eventType) == 6 ? 4 : 6;
+		return reader.getUnsignedLong(pos, length);
+	}
+	
+	private EventBody getEventBody(final EventHeader eventHeader) throws IOException {
 		try {
-			byte[] rawEventBody = fileMappedBuffer.getBytes(eventHeader.getEventBodyLength());
+			int eventBodyLength = eventHeader.getEventBodyLength();
+			ByteBuffer rawEventBody;
+			// the table maps are kept by the file meta, they are always copied out of the window.
+			if (binlogFileMeta.zeroCopy() && eventHeader.getEventType() != EventType.TABLE_MAP_EVENT) {
+				rawEventBody = reader.getSlice(eventBodyLength);
+			} else {
+				rawEventBody = ByteBuffer.wrap(reader.getBytes(eventBodyLength)).asReadOnlyBuffer();
+			}
 			EventBody eventBody = EventBodyFactory.createEventBody(rawEventBody, eventHeader, binlogFileMeta, isDecodeBody);
 			if (eventHeader.getEventType().equals(EventType.TABLE_MAP_EVENT)) {
 				TableMapEventBody tableMapEventBody = (TableMapEventBody) eventBody;
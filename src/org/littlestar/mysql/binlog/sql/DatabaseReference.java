@@ -19,7 +19,7 @@ package org.littlestar.mysql.binlog.sql;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,11 +28,11 @@ import org.littlestar.mysql.binlog.event.body.helper.TableDefine;
 
 public class DatabaseReference {
 	private static final Logger logger = Logger.getLogger(DatabaseReference.class.getName());
-	private HashMap<Long, TableDefine> tableDefineCache;
+	private ConcurrentHashMap<Long, TableDefine> tableDefineCache; // shared by the chunks decoded in parallel.
 	private Connection connection;
 	private String refTableName;
 	public DatabaseReference(final Connection connection, String refTableName) {
-		tableDefineCache = new HashMap<Long, TableDefine>();
+		tableDefineCache = new ConcurrentHashMap<Long, TableDefine>();
 		this.connection = connection;
 		this.refTableName = refTableName;
 	}
@@ -42,26 +42,29 @@ public class DatabaseReference {
 		//if not in cache, get from database;
 		if (dbTableDefine == null) {
 			dbTableDefine = new TableDefine(tableId);
+			// the reference connection could be shared by the miners running in parallel.
 			try {
-				PreparedStatement stmt = connection
-						.prepareStatement("select column_name, ordinal_position, character_set_name" + " from "
-								+ refTableName + " where table_schema=? and table_name=?");
-				stmt.setString(1, schema);
-				stmt.setString(2, tableName);
-				ResultSet rs = stmt.executeQuery();
-				while (rs.next()) {
-					int ordinalPosition = rs.getInt("ordinal_position");
-					String columnName = rs.getString("column_name");
-					String charsetName = rs.getString("character_set_name");
-					ColumnDefine columnDef = new ColumnDefine();
-					columnDef.setColumnId(ordinalPosition - 1);
-					columnDef.setColumnName(columnName);
-					columnDef.setCharsetName(charsetName);
-					dbTableDefine.setColumnDefine(columnDef);
+				synchronized (connection) {
+					PreparedStatement stmt = connection
+							.prepareStatement("select column_name, ordinal_position, character_set_name" + " from "
+									+ refTableName + " where table_schema=? and table_name=?");
+					stmt.setString(1, schema);
+					stmt.setString(2, tableName);
+					ResultSet rs = stmt.executeQuery();
+					while (rs.next()) {
+						int ordinalPosition = rs.getInt("ordinal_position");
+						String columnName = rs.getString("column_name");
+						String charsetName = rs.getString("character_set_name");
+						ColumnDefine columnDef = new ColumnDefine();
+						columnDef.setColumnId(ordinalPosition - 1);
+						columnDef.setColumnName(columnName);
+						columnDef.setCharsetName(charsetName);
+						dbTableDefine.setColumnDefine(columnDef);
+					}
+					rs.close();
+					stmt.close();
+					tableDefineCache.put(tableId, dbTableDefine);
 				}
-				rs.close();
-				stmt.close();
-				tableDefineCache.put(tableId, dbTableDefine);
 			} catch (Throwable e) {
 				logger.log(Level.WARNING, "", e);
 				return null;
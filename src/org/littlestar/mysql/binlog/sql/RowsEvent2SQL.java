@@ -16,10 +16,11 @@
 
 package org.littlestar.mysql.binlog.sql;
 
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.helper.Collations;
 import org.littlestar.mysql.binlog.event.body.helper.ColumnDefine;
 import org.littlestar.mysql.binlog.event.body.helper.ColumnImage;
 import org.littlestar.mysql.binlog.event.body.helper.RowImage;
@@ -83,7 +84,7 @@ public class RowsEvent2SQL {
 		for (int i = 0; i < rowImages.size(); i++) {
 			RowImage image = rowImages.get(i);
 			StatmentPair stmtPair = new StatmentPair();
-			String redoStmt = "insert into " + tableName + " (" + getInsertColumnList(tableDefine, dbRef) + ") values ("
+			String redoStmt = "insert into " + tableName + " (" + getInsertColumnList(tableDefine, dbRef, image) + ") values ("
 					+ getInsertValueList(tableDefine, dbRef, image, defaultCharset) + ")";
 			String undoStmt = "delete from " + tableName + " where "
 					+ getDeleteWhereCondition(tableDefine, dbRef, image, defaultCharset);
@@ -114,12 +115,22 @@ public class RowsEvent2SQL {
 				} else {
 					String undoStmt = "update " + tableMapEventBody.getSchemaName() + "." + tableMapEventBody.getTableName() + " set ";
 					String redoStmt = undoStmt;
-					undoStmt += getUpdateAssignmentList(tableDefine, dbRef, beforeImage, changed, defaultCharset);
 					redoStmt += getUpdateAssignmentList(tableDefine, dbRef, afterImage, changed, defaultCharset);
-					undoStmt += " where ";
 					redoStmt += " where ";
-					undoStmt += getUpdateWhereCondition(tableDefine, dbRef, afterImage, defaultCharset);
-					redoStmt += getUpdateWhereCondition(tableDefine, dbRef, beforeImage, defaultCharset);
+					redoStmt += getUpdateWhereCondition(tableDefine, dbRef, beforeImage, beforeImage, defaultCharset);
+					//binlog_row_image=MINIMAL时，before-image可能不包含变化列的原值，无法生成撤销语句。
+					ArrayList<Integer> undoChanged = new ArrayList<Integer>();
+					for (int col : changed) {
+						if (beforeImage.isPresent(col))
+							undoChanged.add(col);
+					}
+					if (undoChanged.size() == 0) {
+						undoStmt = "/* not-available: before values are not logged */";
+					} else {
+						undoStmt += getUpdateAssignmentList(tableDefine, dbRef, beforeImage, undoChanged, defaultCharset);
+						undoStmt += " where ";
+						undoStmt += getUpdateWhereCondition(tableDefine, dbRef, beforeImage, afterImage, defaultCharset);
+					}
 					stmtPair.setUndoStatement(undoStmt);
 					stmtPair.setRedoStatement(redoStmt);
 				}
@@ -138,7 +149,7 @@ public class RowsEvent2SQL {
 			RowImage image = rowImages.get(i);
 			StatmentPair stmtPair = new StatmentPair();
 			String redoStmt = "delete from " + tableName + " where " + getDeleteWhereCondition(tableDefine, dbRef, image, defaultCharset);
-			String undoStmt = "insert into " + tableName + " (" + getInsertColumnList(tableDefine, dbRef) + ") values ("
+			String undoStmt = "insert into " + tableName + " (" + getInsertColumnList(tableDefine, dbRef, image) + ") values ("
 					+ getInsertValueList(tableDefine, dbRef, image, defaultCharset) + ")";
 			stmtPair.setRedoStatement(redoStmt);
 			stmtPair.setUndoStatement(undoStmt);	
@@ -179,18 +190,25 @@ public class RowsEvent2SQL {
 		return assignmentList.toString();
 	}
 	
-	private static String getUpdateWhereCondition(TableDefine tableDefine, DatabaseReference dbRef, RowImage image, String defaultCharset) {
-		return getWhereCondition(tableDefine, dbRef, image, defaultCharset);
+	/**
+	 * @param keyImage the row-image decides the columns of where condition.
+	 * @param valueImage the values of columns, use the value of keyImage if not present in valueImage.
+	 */
+	private static String getUpdateWhereCondition(TableDefine tableDefine, DatabaseReference dbRef, RowImage keyImage,
+			RowImage valueImage, String defaultCharset) {
+		return getWhereCondition(tableDefine, dbRef, keyImage, valueImage, defaultCharset);
 	}
 	
 	private static String getDeleteWhereCondition(TableDefine tableDefine, DatabaseReference dbRef, RowImage image, String defaultCharset) {
-		return getWhereCondition(tableDefine, dbRef, image, defaultCharset);
+		return getWhereCondition(tableDefine, dbRef, image, image, defaultCharset);
 	}
 	
-	private static String getWhereCondition(TableDefine blongTableDefine, DatabaseReference dbRef, RowImage image, String defaultCharset) {
+	private static String getWhereCondition(TableDefine blongTableDefine, DatabaseReference dbRef, RowImage keyImage,
+			RowImage valueImage, String defaultCharset) {
 		StringBuilder whereClause = new StringBuilder();
 		String spliter = " and ";
-		for (int i = 0; i < blongTableDefine.getColumnCount(); i++) {
+		for (int i : getKeyColumns(blongTableDefine, keyImage)) {
+			RowImage image = valueImage.isPresent(i) ? valueImage : keyImage;
 			String columnName = blongTableDefine.getCoumnName(i);
 			ColumnDefine columnDefine = blongTableDefine.getColumnDefine(i);
 			if (columnName == null) {
@@ -217,10 +235,37 @@ public class RowsEvent2SQL {
 		return whereClause.toString();
 	}
 	
-	private static String getInsertColumnList(TableDefine blogTableDefine, DatabaseReference dbRef) {
+	/**
+	 * 如果已知主键(SIMPLE_PRIMARY_KEY)且主键列都在row-image中，where条件只使用主键列，其他列不需要解码；
+	 * 否则(或主键列序号超出列数)使用row-image中的所有列。
+	 */
+	private static ArrayList<Integer> getKeyColumns(TableDefine tableDefine, RowImage image) {
+		ArrayList<Integer> keyColumns = new ArrayList<Integer>();
+		int[] primaryKeyColumns = tableDefine.getPrimaryKeyColumns();
+		if (primaryKeyColumns != null) {
+			for (int col : primaryKeyColumns) {
+				if (col < 0 || col >= tableDefine.getColumnCount() || !image.isPresent(col)) {
+					keyColumns.clear();
+					break;
+				}
+				keyColumns.add(col);
+			}
+		}
+		if (keyColumns.size() == 0) {
+			for (int col = 0; col < tableDefine.getColumnCount(); col++) {
+				if (image.isPresent(col))
+					keyColumns.add(col);
+			}
+		}
+		return keyColumns;
+	}
+	
+	private static String getInsertColumnList(TableDefine blogTableDefine, DatabaseReference dbRef, RowImage image) {
 		StringBuilder columnList = new StringBuilder();
 		String spliter = ", ";
 		for (int i = 0; i < blogTableDefine.getColumnCount(); i++) {
+			if (!image.isPresent(i))
+				continue;
 			String columnName = blogTableDefine.getCoumnName(i);
 			if (columnName == null) {
 				// 如果TableMapEvent不包含column-name, 尝试通过数据库的information_schema.columns中获取；
@@ -242,6 +287,8 @@ public class RowsEvent2SQL {
 		StringBuilder valueList = new StringBuilder();
 		String spliter = ", ";
 		for (int i = 0; i < tableDefine.getColumnCount(); i++) {
+			if (!image.isPresent(i))
+				continue;
 			ColumnDefine columnDefine = tableDefine.getColumnDefine(i);
 			ColumnImage columnImage = image.getColumnImage(i);
 			
@@ -267,9 +314,13 @@ public class RowsEvent2SQL {
 			value = rawValue.toString();
 		} else {
 			if (rawValue instanceof byte[]) {
-				String charset = columnDefine.getCharsetName();
-				if(charset == null)
-					charset = defaultCharset;
+				Charset charset = Collations.getCharset(columnDefine.getCollationId());
+				if (charset == null) {
+					String charsetName = columnDefine.getCharsetName();
+					if (charsetName == null)
+						charsetName = defaultCharset;
+					charset = ParserHelper.getCharset(charsetName);
+				}
 				value = "'" + ParserHelper.getString((byte[]) rawValue, charset) + "'";
 			} else {
 				value = "'" + rawValue.toString() + "'";
@@ -281,24 +332,11 @@ public class RowsEvent2SQL {
 	private static ArrayList<Integer> getChangedColumns(RowImage beforeImage, RowImage afterImage) {
 		final ArrayList<Integer> changedColumns = new ArrayList<Integer>();
 		for (int i = 0; i < afterImage.getColumnCount(); i++) {
-			Object colAfterValue = afterImage.getColumnImage(i).getColumnValue();
-			Object colBeforeValue = beforeImage.getColumnImage(i).getColumnValue();
-			if (colAfterValue != null) {
-				if (!colAfterValue.equals(colBeforeValue)) {
-					//!! byte[] could not compare using equals.
-					if ((colAfterValue instanceof byte[]) & (colBeforeValue instanceof byte[])) {
-						if (!Arrays.equals((byte[]) colAfterValue, (byte[]) colBeforeValue)) {
-							changedColumns.add(i);
-						}
-					} else {
-						changedColumns.add(i);
-					}
-
-				}
-			} else {
-				if (colBeforeValue != null) {
-					changedColumns.add(i);
-				}
+			// string values are compared by raw bytes, without decoding.
+			if (!afterImage.isPresent(i))
+				continue;
+			if (!beforeImage.isPresent(i) || !afterImage.columnValueEquals(i, beforeImage)) {
+				changedColumns.add(i);
 			}
 		}
 		return changedColumns;
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.event.body.helper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * DecimalDecoder against the encodings of decimal2bin() (decimal.c): the known vectors, and the 
+ * round trip of the values encoded by a reference decimal2bin, including positive and negative
+ * values, precision below and above 18, scale 0, and the leftover digits groups of 1 to 4 bytes. 
+ * 
+ * Run by "ant test", it exits with non-zero status if any case fails.
+ */
+public class DecimalDecoderTest {
+	private static final int[] DIG2BYTES = { 0, 1, 1, 2, 2, 3, 3, 4, 4, 4 };
+	private static final int MAX_PRECISION = 65;
+	private static final int MAX_SCALE = 30;
+	private static int cases = 0;
+	
+	public static void main(String[] args) {
+		testKnownEncodings();
+		testLeftoverGroups();
+		testBoundaries();
+		testRandomRoundTrip(20000, 20191113L);
+		System.out.println("DecimalDecoderTest: " + cases + " cases passed.");
+	}
+	
+	/**
+	 * The examples of decimal2bin() comments and the MySQL internals manual.
+	 */
+	private static void testKnownEncodings() {
+		// DECIMAL(14,4) 1234567890.1234: 0x810DFB38D204D2
+		checkDecode(14, 4, bytes(0x81, 0x0D, 0xFB, 0x38, 0xD2, 0x04, 0xD2), "1234567890.1234");
+		// negative: the bytes are inverted.
+		checkDecode(14, 4, bytes(0x7E, 0xF2, 0x04, 0xC7, 0x2D, 0xFB, 0x2D), "-1234567890.1234");
+		// DECIMAL(10,0) 0 and DECIMAL(5,2) -1.00
+		checkDecode(10, 0, bytes(0x80, 0x00, 0x00, 0x00, 0x00), "0");
+		checkDecode(5, 2, bytes(0x7F, 0xFE, 0xFF), "-1.00");
+	}
+	
+	/**
+	 * Leftover digits of 1 to 8 (groups of 1 to 4 bytes) in the integer part and the fraction part.
+	 */
+	private static void testLeftoverGroups() {
+		for (int leftover = 1; leftover <= 8; leftover++) {
+			// integer part: leftover digits + 0 or 1 full group, scale 0.
+			for (int fullGroups = 0; fullGroups <= 1; fullGroups++) {
+				int precision = leftover + fullGroups * 9;
+				checkRoundTrip(precision, 0, nines(precision, 0));
+				checkRoundTrip(precision, 0, nines(precision, 0).negate());
+				checkRoundTrip(precision, 0, BigDecimal.ONE);
+			}
+			// fraction part: 1 integer digit + 0 or 1 full group + leftover digits.
+			for (int fullGroups = 0; fullGroups <= 1; fullGroups++) {
+				int scale = leftover + fullGroups * 9;
+				checkRoundTrip(scale + 1, scale, nines(scale + 1, scale));
+				checkRoundTrip(scale + 1, scale, nines(scale + 1, scale).negate());
+				checkRoundTrip(scale + 1, scale, new BigDecimal(BigInteger.ONE, scale));
+			}
+		}
+	}
+	
+	/**
+	 * The precision 18 / 19 boundary (long / char[] decoding), scale 0 and max precision.
+	 */
+	private static void testBoundaries() {
+		int[][] columns = { { 18, 0 }, { 18, 9 }, { 18, 18 }, { 19, 0 }, { 19, 9 }, { 19, 19 }, { 27, 9 },
+				{ 30, 10 }, { 36, 18 }, { 65, 0 }, { 65, 30 }, { 1, 0 }, { 1, 1 } };
+		for (int[] column : columns) {
+			int precision = column[0];
+			int scale = column[1];
+			checkRoundTrip(precision, scale, nines(precision, scale));
+			checkRoundTrip(precision, scale, nines(precision, scale).negate());
+			checkRoundTrip(precision, scale, BigDecimal.ZERO.setScale(scale));
+			checkRoundTrip(precision, scale, new BigDecimal(BigInteger.ONE, scale).negate());
+		}
+	}
+	
+	private static void testRandomRoundTrip(int count, long seed) {
+		Random random = new Random(seed);
+		for (int i = 0; i < count; i++) {
+			int precision = 1 + random.nextInt(MAX_PRECISION);
+			int scale = random.nextInt(Math.min(precision, MAX_SCALE) + 1);
+			// random number of digits, so the leading groups are zeros or not.
+			int digits = 1 + random.nextInt(precision);
+			BigInteger unscaled = new BigInteger(digits * 4, random).mod(BigInteger.TEN.pow(digits));
+			BigDecimal value = new BigDecimal(random.nextBoolean() ? unscaled : unscaled.negate(), scale);
+			checkRoundTrip(precision, scale, value);
+		}
+	}
+	
+	private static void checkRoundTrip(int precision, int scale, BigDecimal value) {
+		checkDecode(precision, scale, decimal2bin(precision, scale, value), value.toPlainString());
+	}
+	
+	private static void checkDecode(int precision, int scale, byte[] encoded, String expected) {
+		DecimalDecoder decoder = new DecimalDecoder(ByteOrder.LITTLE_ENDIAN, precision, scale);
+		if (decoder.getLength() != encoded.length) {
+			fail(precision, scale, expected, "length " + decoder.getLength() + ", expected " + encoded.length);
+		}
+		// decode at an offset of the buffer, as in a row image.
+		byte[] row = new byte[encoded.length + 3];
+		System.arraycopy(encoded, 0, row, 3, encoded.length);
+		BigDecimal decoded = decoder.decode(ByteBuffer.wrap(row).asReadOnlyBuffer(), 3);
+		if (!decoded.equals(new BigDecimal(expected))) {
+			fail(precision, scale, expected, "decoded " + decoded.toPlainString());
+		}
+		cases++;
+	}
+	
+	private static void fail(int precision, int scale, String expected, String message) {
+		throw new AssertionError("DECIMAL(" + precision + "," + scale + ") " + expected + ": " + message);
+	}
+	
+	/**
+	 * Reference encoder, decimal2bin() of decimal.c: integer leftover digits, integer groups of 9 
+	 * digits, fraction groups of 9 digits, fraction leftover digits, big-endian, the highest bit of 
+	 * the first byte flipped, and all bytes inverted if negative.
+	 */
+	private static byte[] decimal2bin(int precision, int scale, BigDecimal value) {
+		int integerDigits = precision - scale;
+		String digits = value.setScale(scale).unscaledValue().abs().toString();
+		StringBuilder padded = new StringBuilder();
+		for (int i = digits.length(); i < precision; i++) {
+			padded.append('0');
+		}
+		String all = padded.append(digits).toString();
+		String integerPart = all.substring(0, integerDigits);
+		String fractionPart = all.substring(integerDigits);
+		
+		int length = integerDigits / 9 * 4 + DIG2BYTES[integerDigits % 9] + scale / 9 * 4 + DIG2BYTES[scale % 9];
+		byte[] encoded = new byte[length];
+		int p = 0;
+		int leftover = integerDigits % 9;
+		p = putGroup(encoded, p, integerPart.substring(0, leftover));
+		for (int i = leftover; i < integerDigits; i += 9) {
+			p = putGroup(encoded, p, integerPart.substring(i, i + 9));
+		}
+		for (int i = 0; i + 9 <= scale; i += 9) {
+			p = putGroup(encoded, p, fractionPart.substring(i, i + 9));
+		}
+		p = putGroup(encoded, p, fractionPart.substring(scale / 9 * 9));
+		encoded[0] ^= 0x80;
+		if (value.signum() < 0) {
+			for (int i = 0; i < encoded.length; i++) {
+				encoded[i] = (byte) ~encoded[i];
+			}
+		}
+		return encoded;
+	}
+	
+	private static int putGroup(byte[] encoded, int p, String group) {
+		int bytes = DIG2BYTES[group.length()];
+		int value = group.length() == 0 ? 0 : Integer.parseInt(group);
+		for (int i = bytes - 1; i >= 0; i--) {
+			encoded[p + i] = (byte) value;
+			value >>>= 8;
+		}
+		return p + bytes;
+	}
+	
+	private static BigDecimal nines(int precision, int scale) {
+		return new BigDecimal(BigInteger.TEN.pow(precision).subtract(BigInteger.ONE), scale);
+	}
+	
+	private static byte[] bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.event.body.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.helper.Collations;
+import org.littlestar.mysql.binlog.event.body.helper.ColumnDefine;
+import org.littlestar.mysql.binlog.event.body.helper.TableDefine;
+import org.littlestar.mysql.binlog.event.header.EventHeader;
+import org.littlestar.mysql.binlog.parser.BinlogFileMeta;
+
+/**
+ * TABLE_MAP_EVENT bodies of 1 to 20 columns with optional metadata (binlog_row_metadata=FULL): the
+ * NULL-bitmask is (column-count + 7) / 8 bytes, so the SIGNEDNESS, column names, SIMPLE_PRIMARY_KEY
+ * and the collations of DEFAULT_CHARSET / COLUMN_CHARSET after it are read at the right offset.
+ * 
+ * Run by "ant test", it exits with non-zero status if any case fails.
+ */
+public class TableMapEventBodyTest {
+	private static final int LATIN1_SWEDISH_CI = 8;
+	private static final int UTF8_GENERAL_CI = 33;
+	
+	public static void main(String[] args) {
+		BinlogFileMeta meta = newMeta();
+		int cases = 0;
+		for (int columnCount = 1; columnCount <= 20; columnCount++) {
+			for (boolean columnCharset : new boolean[] { false, true }) {
+				checkTableMap(meta, columnCount, columnCharset);
+				cases++;
+			}
+		}
+		System.out.println("TableMapEventBodyTest: " + cases + " cases passed.");
+	}
+	
+	/**
+	 * Columns: INT, VARCHAR(30), INT, VARCHAR(30) ..., nullable every 3rd column, every 3rd INT column
+	 * (from the second) is unsigned, the primary key is the last column, the first character column is
+	 * utf8 and the others latin1.
+	 */
+	private static void checkTableMap(BinlogFileMeta meta, int columnCount, boolean columnCharset) {
+		String name = columnCount + " columns" + (columnCharset ? ", COLUMN_CHARSET" : ", DEFAULT_CHARSET");
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		writeInt(body, 77, 6); // table id
+		writeInt(body, 1, 2); // flags
+		writeString(body, "test");
+		body.write(0);
+		writeString(body, "t" + columnCount);
+		body.write(0);
+		body.write(columnCount);
+		ByteArrayOutputStream columnMeta = new ByteArrayOutputStream();
+		int characterColumns = 0;
+		for (int i = 0; i < columnCount; i++) {
+			if (isCharacter(i)) {
+				body.write(0x0f);
+				writeInt(columnMeta, 30, 2);
+				characterColumns++;
+			} else {
+				body.write(0x03);
+			}
+		}
+		body.write(columnMeta.size());
+		body.write(columnMeta.toByteArray(), 0, columnMeta.size());
+		byte[] nullBitmap = new byte[(columnCount + 7) / 8];
+		for (int i = 0; i < columnCount; i += 3) {
+			nullBitmap[i / 8] |= 1 << (i % 8);
+		}
+		body.write(nullBitmap, 0, nullBitmap.length);
+		
+		byte[] signedness = new byte[(columnCount - characterColumns + 7) / 8];
+		for (int i = 1; i < columnCount - characterColumns; i += 3) {
+			signedness[i / 8] |= 0x80 >>> (i % 8);
+		}
+		ByteArrayOutputStream unsigned = new ByteArrayOutputStream();
+		unsigned.write(signedness, 0, signedness.length);
+		writeField(body, TableMapEventOptionalMetaData.SIGNEDNESS, unsigned);
+		ByteArrayOutputStream names = new ByteArrayOutputStream();
+		for (int i = 0; i < columnCount; i++) {
+			writeString(names, "c" + i);
+		}
+		writeField(body, TableMapEventOptionalMetaData.COLUMN_NAME, names);
+		ByteArrayOutputStream primaryKey = new ByteArrayOutputStream();
+		primaryKey.write(columnCount - 1);
+		writeField(body, TableMapEventOptionalMetaData.SIMPLE_PRIMARY_KEY, primaryKey);
+		ByteArrayOutputStream charsets = new ByteArrayOutputStream();
+		if (columnCharset) {
+			for (int i = 0; i < characterColumns; i++) {
+				charsets.write(i == 0 ? UTF8_GENERAL_CI : LATIN1_SWEDISH_CI);
+			}
+			writeField(body, TableMapEventOptionalMetaData.COLUMN_CHARSET, charsets);
+		} else if (characterColumns > 0) {
+			charsets.write(LATIN1_SWEDISH_CI); // default, and (index of character column, collation)
+			charsets.write(0);
+			charsets.write(UTF8_GENERAL_CI);
+			writeField(body, TableMapEventOptionalMetaData.DEFAULT_CHARSET, charsets);
+		}
+		
+		byte[] raw = body.toByteArray();
+		EventHeader header = new EventHeader(EventHeader.COMMON_HEADER_LENGTH_V4);
+		header.setEventType(EventType.TABLE_MAP_EVENT);
+		header.setEventSize(EventHeader.COMMON_HEADER_LENGTH_V4 + raw.length);
+		TableMapEventBody tableMap = new TableMapEventBody(ByteBuffer.wrap(raw).asReadOnlyBuffer(), header, meta);
+		
+		TableDefine table = tableMap.getTableDefine();
+		check(table.getColumnCount() == columnCount, name + ": column count " + table.getColumnCount());
+		int[] pk = table.getPrimaryKeyColumns();
+		check(pk != null && pk.length == 1 && pk[0] == columnCount - 1, name + ": primary key "
+				+ (pk == null ? null : Arrays.toString(pk)));
+		for (int i = 0, character = 0, numeric = 0; i < columnCount; i++) {
+			ColumnDefine column = table.getColumnDefine(i);
+			check(("c" + i).equals(table.getCoumnName(i)), name + ": column " + i + " name " + table.getCoumnName(i));
+			check(column.getIsNullable() == (i % 3 == 0), name + ": column " + i + " nullable " + column.getIsNullable());
+			if (isCharacter(i)) {
+				int expected = character++ == 0 ? UTF8_GENERAL_CI : LATIN1_SWEDISH_CI;
+				check(column.getCollationId() == expected, name + ": column " + i + " collation "
+						+ column.getCollationId() + ", expected " + expected);
+				Charset charset = Collations.getCharset(column.getCollationId());
+				check(charset != null, name + ": column " + i + " has no charset.");
+				check(!column.getIsUnsigned(), name + ": character column " + i + " unsigned");
+			} else {
+				boolean expected = numeric++ % 3 == 1;
+				check(column.getIsUnsigned() == expected, name + ": column " + i + " unsigned " 
+						+ column.getIsUnsigned() + ", expected " + expected);
+			}
+		}
+	}
+	
+	private static boolean isCharacter(int column) {
+		return column % 2 == 1;
+	}
+	
+	private static BinlogFileMeta newMeta() {
+		BinlogFileMeta meta = new BinlogFileMeta("test.000001", ByteOrder.LITTLE_ENDIAN);
+		byte[] postHeaderLengths = new byte[40];
+		postHeaderLengths[EventType.TABLE_MAP_EVENT.getTypeCode() - 1] = 8;
+		meta.setPostHeaderLengths(postHeaderLengths);
+		meta.setChecksumLength(0);
+		return meta;
+	}
+	
+	private static void writeField(ByteArrayOutputStream body, int type, ByteArrayOutputStream value) {
+		body.write(type);
+		body.write(value.size());
+		body.write(value.toByteArray(), 0, value.size());
+	}
+	
+	private static void writeString(ByteArrayOutputStream out, String value) {
+		byte[] raw = value.getBytes(Charset.forName("UTF-8"));
+		out.write(raw.length);
+		out.write(raw, 0, raw.length);
+	}
+	
+	private static void writeInt(ByteArrayOutputStream out, long value, int length) {
+		for (int i = 0; i < length; i++) {
+			out.write((int) (value >>> (8 * i)));
+		}
+	}
+	
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.miner;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MinerRing with multiple producers and consumers: each sequence is taken once with the element put
+ * for it, a consumer taking the sequences in order gets the elements in order, a put waits while the
+ * ring is full (backpressure) and a take waits until its sequence is put, the takes after close(end)
+ * return null, and waiting is interrupted by Thread.interrupt().
+ *
+ * Run by "ant test", it exits with non-zero status if any case fails.
+ */
+public class MinerRingTest {
+	private static final long TIMEOUT_MS = 60000L;
+	private static final long BLOCKED_MS = 200L;
+	private static volatile Throwable failure = null;
+	
+	public static void main(String[] args) throws Throwable {
+		testCapacity();
+		for (int capacity : new int[] { 2, 16, 1024 }) {
+			testOrdering(capacity, 1, 1, 200000);
+			testOrdering(capacity, 4, 1, 200000);
+			testOrdering(capacity, 4, 4, 200000);
+			testOrdering(capacity, 1, 4, 200000);
+		}
+		testInterleavedProducers(8, 4, 100000);
+		testBackpressure();
+		testClose();
+		testInterrupt();
+		System.out.println("MinerRingTest: passed.");
+	}
+	
+	private static void testCapacity() {
+		check(new MinerRing<Object>(1).getCapacity() == 2, "capacity of 1 is not 2.");
+		check(new MinerRing<Object>(3).getCapacity() == 4, "capacity of 3 is not 4.");
+		check(new MinerRing<Object>(1024).getCapacity() == 1024, "capacity of 1024 is not 1024.");
+		for (int capacity : new int[] { 0, -1, (1 << 30) + 1 }) {
+			try {
+				new MinerRing<Object>(capacity);
+				throw new AssertionError("capacity " + capacity + " is accepted.");
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+	
+	/**
+	 * Producers and consumers claim the sequences from shared counters (like the render workers of
+	 * MinerPipeline), so the sequences are put and taken out of order by the threads. With one consumer
+	 * the elements must be taken in sequence order.
+	 */
+	private static void testOrdering(final int capacity, int producers, final int consumers, final int count)
+			throws Throwable {
+		final String name = "capacity " + capacity + ", " + producers + " producers, " + consumers + " consumers";
+		final MinerRing<Long> ring = new MinerRing<Long>(capacity);
+		final AtomicLong putSeq = new AtomicLong(0L);
+		final AtomicLong takeSeq = new AtomicLong(0L);
+		final AtomicIntegerArray taken = new AtomicIntegerArray(count);
+		Thread[] threads = new Thread[producers + consumers];
+		for (int i = 0; i < producers; i++) {
+			threads[i] = newThread(new Task() {
+				@Override
+				public void run() throws Throwable {
+					long seq;
+					while ((seq = putSeq.getAndIncrement()) < count) {
+						ring.put(seq, Long.valueOf(seq * 31 + 7));
+					}
+				}
+			}, "producer-" + i);
+		}
+		for (int i = 0; i < consumers; i++) {
+			threads[producers + i] = newThread(new Task() {
+				@Override
+				public void run() throws Throwable {
+					long seq;
+					long last = -1L;
+					while ((seq = takeSeq.getAndIncrement()) < count) {
+						Long element = ring.take(seq);
+						check(element != null && element.longValue() == seq * 31 + 7, name + ": take(" + seq
+								+ ") returns " + element);
+						check(consumers > 1 || seq == last + 1, name + ": take(" + seq + ") after " + last);
+						check(taken.incrementAndGet((int) seq) == 1, name + ": " + seq + " is taken twice.");
+						last = seq;
+					}
+				}
+			}, "consumer-" + i);
+		}
+		runAll(name, threads);
+		for (int i = 0; i < count; i++) {
+			check(taken.get(i) == 1, name + ": " + i + " is taken " + taken.get(i) + " times.");
+		}
+		check(ring.depth() == 0L, name + ": depth " + ring.depth() + " after all are taken.");
+	}
+	
+	/**
+	 * Each producer puts its own stride of sequences (p, p + n, p + 2n ...), so a fast producer runs
+	 * ahead of the others until the ring is full, the consumer must still take them in order.
+	 */
+	private static void testInterleavedProducers(final int producers, int capacity, final int count) throws Throwable {
+		final String name = producers + " interleaved producers, capacity " + capacity;
+		final MinerRing<Long> ring = new MinerRing<Long>(capacity);
+		Thread[] threads = new Thread[producers + 1];
+		for (int i = 0; i < producers; i++) {
+			final int first = i;
+			threads[i] = newThread(new Task() {
+				@Override
+				public void run() throws Throwable {
+					for (long seq = first; seq < count; seq += producers) {
+						ring.put(seq, Long.valueOf(-seq));
+					}
+				}
+			}, "producer-" + i);
+		}
+		threads[producers] = newThread(new Task() {
+			@Override
+			public void run() throws Throwable {
+				for (long seq = 0; seq < count; seq++) {
+					Long element = ring.take(seq);
+					check(element != null && element.longValue() == -seq, name + ": take(" + seq + ") returns " + element);
+				}
+			}
+		}, "consumer");
+		runAll(name, threads);
+	}
+	
+	/**
+	 * A put waits while the ring is full, until the element of seq - capacity is taken.
+	 */
+	private static void testBackpressure() throws Throwable {
+		final MinerRing<String> ring = new MinerRing<String>(4);
+		for (int seq = 0; seq < 4; seq++) {
+			ring.put(seq, "e" + seq);
+		}
+		check(ring.depth() == 4L, "full ring depth " + ring.depth());
+		Thread producer = newThread(new Task() {
+			@Override
+			public void run() throws Throwable {
+				ring.put(4L, "e4");
+			}
+		}, "producer");
+		producer.start();
+		producer.join(BLOCKED_MS);
+		check(producer.isAlive(), "put(4) on a full ring of 4 does not wait.");
+		check(ring.take(1L).equals("e1"), "take(1) of the full ring.");
+		producer.join(BLOCKED_MS);
+		check(producer.isAlive(), "put(4) does not wait for the slot of 0 (take(1) freed another slot).");
+		check(ring.take(0L).equals("e0"), "take(0) of the full ring.");
+		producer.join(TIMEOUT_MS);
+		check(!producer.isAlive(), "put(4) still waits after take(0).");
+		checkFailure("backpressure");
+		check(ring.depth() == 3L, "depth " + ring.depth() + ", expected 3.");
+		
+		// a take waits until its sequence is put.
+		Thread consumer = newThread(new Task() {
+			@Override
+			public void run() throws Throwable {
+				check("e5".equals(ring.take(5L)), "take(5) does not return e5.");
+			}
+		}, "consumer");
+		consumer.start();
+		consumer.join(BLOCKED_MS);
+		check(consumer.isAlive(), "take(5) does not wait for put(5).");
+		ring.put(5L, "e5");
+		consumer.join(TIMEOUT_MS);
+		check(!consumer.isAlive(), "take(5) still waits after put(5).");
+		checkFailure("backpressure");
+	}
+	
+	/**
+	 * The elements put before end are still taken, the takes from end return null without waiting.
+	 */
+	private static void testClose() throws Throwable {
+		final MinerRing<String> ring = new MinerRing<String>(8);
+		ring.put(0L, "e0");
+		ring.put(1L, "e1");
+		Thread consumer = newThread(new Task() {
+			@Override
+			public void run() throws Throwable {
+				check("e0".equals(ring.take(0L)), "take(0) before end.");
+				check("e1".equals(ring.take(1L)), "take(1) before end.");
+				check(ring.take(2L) == null, "take(2) after close(2) is not null.");
+			}
+		}, "consumer");
+		consumer.start();
+		consumer.join(BLOCKED_MS);
+		check(consumer.isAlive(), "take(2) does not wait before close.");
+		ring.close(2L);
+		consumer.join(TIMEOUT_MS);
+		check(!consumer.isAlive(), "take(2) still waits after close(2).");
+		checkFailure("close");
+		check(ring.take(3L) == null, "take(3) after close(2) is not null.");
+	}
+	
+	private static void testInterrupt() throws Throwable {
+		final MinerRing<String> ring = new MinerRing<String>(2);
+		final boolean[] interrupted = new boolean[1];
+		Thread consumer = newThread(new Task() {
+			@Override
+			public void run() throws Throwable {
+				try {
+					ring.take(0L);
+				} catch (InterruptedException e) {
+					interrupted[0] = true;
+				}
+			}
+		}, "consumer");
+		consumer.start();
+		consumer.join(BLOCKED_MS);
+		consumer.interrupt();
+		consumer.join(TIMEOUT_MS);
+		check(!consumer.isAlive(), "take(0) still waits after interrupt.");
+		checkFailure("interrupt");
+		check(interrupted[0], "take(0) is not interrupted.");
+	}
+	
+	private interface Task {
+		void run() throws Throwable;
+	}
+	
+	private static Thread newThread(final Task task, String name) {
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} catch (Throwable e) {
+					failure = e;
+				}
+			}
+		}, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+	
+	private static void runAll(String name, Thread[] threads) throws Throwable {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join(Math.max(1L, deadline - System.currentTimeMillis()));
+			check(!thread.isAlive(), name + ": " + thread.getName() + " is still waiting (deadlock).");
+		}
+		checkFailure(name);
+	}
+	
+	private static void checkFailure(String name) {
+		if (failure != null) {
+			throw new AssertionError(name + " failed.", failure);
+		}
+	}
+	
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
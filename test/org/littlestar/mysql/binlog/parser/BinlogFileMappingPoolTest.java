@@ -0,0 +1,187 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.littlestar.mysql.binlog.parser;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Readers of BinlogFileMappedByteBuffers sharing a BinlogFileMappingPool: n threads reading n files 
+ * bigger than a window with a cap of n windows must not wait for each other forever, the mapped bytes
+ * must not exceed the cap, and all bytes are released when the files are closed. The retire listener
+ * is called before each window is left, while the window is still mapped.
+ * 
+ * Run by "ant test", it exits with non-zero status if any case fails.
+ */
+public class BinlogFileMappingPoolTest {
+	private static final int WINDOW = 64 * 1024;
+	private static final int FILE_SIZE = 16 * WINDOW + 12345;
+	private static final long TIMEOUT_MS = 60000L;
+	private static volatile Throwable failure = null;
+	
+	public static void main(String[] args) throws Throwable {
+		for (int threads : new int[] { 1, 2, 4, 8 }) {
+			testSharedPool(threads, (long) threads * WINDOW);
+		}
+		testFileBiggerThanCap();
+		testRetireListener();
+		System.out.println("BinlogFileMappingPoolTest: passed.");
+	}
+	
+	private static void testSharedPool(int threads, long maxMappedBytes) throws Throwable {
+		final BinlogFileMappingPool pool = new BinlogFileMappingPool(maxMappedBytes);
+		final File[] files = new File[threads];
+		Thread[] readers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			files[i] = newFile(i);
+			final int fileNo = i;
+			readers[i] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						readFile(files[fileNo], fileNo, pool);
+					} catch (Throwable e) {
+						failure = e;
+					}
+				}
+			}, "reader-" + i);
+			readers[i].setDaemon(true);
+		}
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+		for (Thread reader : readers) {
+			reader.start();
+		}
+		for (Thread reader : readers) {
+			reader.join(Math.max(1L, deadline - System.currentTimeMillis()));
+			check(!reader.isAlive(), threads + " readers, cap " + maxMappedBytes + ": " + reader.getName()
+					+ " is still waiting for the mapping pool (deadlock).");
+		}
+		if (failure != null) {
+			throw new AssertionError(threads + " readers, cap " + maxMappedBytes + " failed.", failure);
+		}
+		check(pool.getMappedBytes() == 0L, "pool mapped bytes " + pool.getMappedBytes() + " after close.");
+		for (File file : files) {
+			file.delete();
+		}
+	}
+	
+	/**
+	 * A single file is read window by window even its window is bigger than the cap.
+	 */
+	private static void testFileBiggerThanCap() throws Throwable {
+		BinlogFileMappingPool pool = new BinlogFileMappingPool(WINDOW / 2);
+		File file = newFile(0);
+		readFile(file, 0, pool);
+		check(pool.getMappedBytes() == 0L, "pool mapped bytes " + pool.getMappedBytes() + " after close.");
+		file.delete();
+	}
+	
+	private static void testRetireListener() throws Throwable {
+		File file = newFile(0);
+		final BinlogFileMappedByteBuffer handle = new BinlogFileMappedByteBuffer(file.getPath(), ByteOrder.BIG_ENDIAN,
+				WINDOW);
+		final AtomicInteger retires = new AtomicInteger(0);
+		handle.setRetireListener(new BinlogFileMappedByteBuffer.RetireListener() {
+			@Override
+			public void beforeRetire(BinlogFileMappedByteBuffer file) throws IOException {
+				check(file == handle && file.getMappedBytes() > 0L, "window retired before the listener is called.");
+				retires.incrementAndGet();
+			}
+		});
+		try {
+			BinlogFileMappedReader reader = new BinlogFileMappedReader(handle);
+			for (long pos = 0; pos + 8 <= FILE_SIZE; pos += WINDOW) {
+				checkLong(reader, 0, pos);
+			}
+		} finally {
+			handle.close();
+		}
+		check(retires.get() == FILE_SIZE / WINDOW, "retire listener called " + retires.get() + " times, expected "
+				+ (FILE_SIZE / WINDOW));
+		file.delete();
+	}
+	
+	/**
+	 * Read the file forward with longs across the window boundaries, then at random positions.
+	 */
+	private static void readFile(File file, int fileNo, BinlogFileMappingPool pool) throws IOException {
+		BinlogFileMappedByteBuffer handle = new BinlogFileMappedByteBuffer(file.getPath(), ByteOrder.BIG_ENDIAN,
+				WINDOW, pool);
+		try {
+			BinlogFileMappedReader reader = new BinlogFileMappedReader(handle);
+			for (long pos = 0; pos + 8 <= FILE_SIZE; pos += 4093) {
+				checkLong(reader, fileNo, pos);
+				checkPool(pool, handle);
+			}
+			Random random = new Random(fileNo);
+			for (int i = 0; i < 2000; i++) {
+				checkLong(reader, fileNo, random.nextInt(FILE_SIZE - 8));
+				checkPool(pool, handle);
+			}
+		} finally {
+			handle.close();
+		}
+		check(handle.getMappedBytes() == 0L, file + " mapped bytes " + handle.getMappedBytes() + " after close.");
+	}
+	
+	private static void checkLong(BinlogFileMappedReader reader, int fileNo, long pos) throws IOException {
+		long expected = 0L;
+		for (int i = 0; i < 8; i++) {
+			expected = (expected << 8) | (byteAt(fileNo, pos + i) & 0xff);
+		}
+		long value = reader.getLong(pos, 8);
+		check(value == expected, "file " + fileNo + " at " + pos + ": " + Long.toHexString(value) + ", expected "
+				+ Long.toHexString(expected));
+	}
+	
+	private static void checkPool(BinlogFileMappingPool pool, BinlogFileMappedByteBuffer handle) {
+		long mapped = pool.getMappedBytes();
+		check(mapped <= Math.max(pool.getMaxMappedBytes(), WINDOW), "pool mapped bytes " + mapped
+				+ " exceed the cap " + pool.getMaxMappedBytes());
+		check(handle.getMappedBytes() <= WINDOW, handle.getFileName() + " holds " + handle.getMappedBytes()
+				+ " bytes, more than one window.");
+	}
+	
+	private static File newFile(int fileNo) throws IOException {
+		File file = File.createTempFile("mapping-pool-" + fileNo + "-", ".bin");
+		file.deleteOnExit();
+		byte[] content = new byte[FILE_SIZE];
+		for (int i = 0; i < FILE_SIZE; i++) {
+			content[i] = byteAt(fileNo, i);
+		}
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+	
+	private static byte byteAt(int fileNo, long pos) {
+		return (byte) (pos * 31 + pos / 251 + fileNo);
+	}
+	
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}
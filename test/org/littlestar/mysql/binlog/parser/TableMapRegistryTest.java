@@ -0,0 +1,307 @@
+/*
+ * Copyright 2019 Li Xiang
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.littlestar.mysql.binlog.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.littlestar.mysql.binlog.event.EventType;
+import org.littlestar.mysql.binlog.event.body.helper.RowDecoderPlan;
+import org.littlestar.mysql.binlog.event.body.impl.TableMapEventBody;
+import org.littlestar.mysql.binlog.event.header.EventHeader;
+
+/**
+ * TableMapRegistry against a HashMap of the expected table maps: insert and replace, growing from the
+ * default capacity with random (colliding) table ids, idle eviction at transaction boundaries, the
+ * lookups of the table ids probed past evicted slots (an evicted slot must not end a probe chain, the
+ * registry drops it by rebuilding instead of leaving a tombstone), and snapshot() as a consistent,
+ * unmodifiable copy.
+ *
+ * Run by "ant test", it exits with non-zero status if any case fails.
+ */
+public class TableMapRegistryTest {
+	private static final BinlogFileMeta META = newMeta();
+	private static int cases = 0;
+	
+	public static void main(String[] args) {
+		testInsertAndReplace();
+		testPlans();
+		testTableFilter();
+		testResize(20000, 20191113L);
+		testEviction(3000, 20191114L);
+		testEvictionProbeChains(20191115L);
+		testSnapshot();
+		System.out.println("TableMapRegistryTest: " + cases + " cases passed.");
+	}
+	
+	private static void testInsertAndReplace() {
+		TableMapRegistry registry = new TableMapRegistry();
+		check(registry.size() == 0 && registry.get(1L) == null, "new registry is not empty.");
+		TableMapEventBody t1 = newTableMap(1L, "t1");
+		TableMapEventBody t2 = newTableMap(2L, "t2");
+		registry.put(t1, false);
+		registry.put(t2, false);
+		check(registry.get(1L) == t1 && registry.get(2L) == t2, "get after put.");
+		check(registry.get(3L) == null, "get of absent table id is not null.");
+		TableMapEventBody t1New = newTableMap(1L, "t1_new");
+		registry.put(t1New, false);
+		check(registry.get(1L) == t1New, "put does not replace the table map of table id 1.");
+		check(registry.size() == 2, "size " + registry.size() + " after replace, expected 2.");
+		TableMapEventBody big = newTableMap(0xFFFFFFFFFFFFL, "big"); // 6 bytes table id
+		registry.put(big, false);
+		check(registry.get(0xFFFFFFFFFFFFL) == big, "get of 6 bytes table id.");
+		registry.clear();
+		check(registry.size() == 0 && registry.get(1L) == null && registry.get(2L) == null, "clear.");
+	}
+	
+	/**
+	 * A plan is dropped when the table map of its table id is replaced by a different table define,
+	 * and putPlan of a table map which is no longer current is ignored.
+	 */
+	private static void testPlans() {
+		TableMapRegistry registry = new TableMapRegistry();
+		TableMapEventBody t1 = newTableMap(1L, "t1");
+		registry.put(t1, false);
+		check(registry.getPlan(1L) == null, "plan before putPlan.");
+		RowDecoderPlan plan = newPlan(t1);
+		registry.putPlan(t1, plan);
+		check(registry.getPlan(1L) == plan, "getPlan after putPlan.");
+		registry.put(t1, false);
+		check(registry.getPlan(1L) == plan, "plan is dropped when the same table map is put again.");
+		TableMapEventBody t1New = newTableMap(1L, "t1");
+		registry.put(t1New, false);
+		check(registry.getPlan(1L) == null, "plan of the replaced table define is not dropped.");
+		registry.putPlan(t1, plan);
+		check(registry.getPlan(1L) == null, "putPlan of a replaced table map is not ignored.");
+		registry.putPlan(t1New, newPlan(t1New));
+		registry.clearPlans();
+		check(registry.getPlan(1L) == null, "clearPlans.");
+	}
+	
+	private static void testTableFilter() {
+		TableMapRegistry registry = new TableMapRegistry();
+		registry.put(newTableMap(1L, "orders"), false);
+		registry.put(newTableMap(2L, "users"), true);
+		check(!registry.isSkipped(1L) && registry.isSkipped(2L), "skip flags of put.");
+		check(!registry.isSkipped(3L), "absent table id is skipped.");
+		registry.setTableFilter(BinlogTableFilter.newFilter().include("test.orders"));
+		check(!registry.isSkipped(1L) && registry.isSkipped(2L), "include test.orders.");
+		registry.setTableFilter(BinlogTableFilter.newFilter().exclude("test.orders"));
+		check(registry.isSkipped(1L) && !registry.isSkipped(2L), "exclude test.orders.");
+		registry.setTableFilter(null);
+		check(!registry.isSkipped(1L) && !registry.isSkipped(2L), "no filter.");
+	}
+	
+	/**
+	 * Grow from the default capacity (64) to hold count random table ids, every table map is found
+	 * after each resize.
+	 */
+	private static void testResize(int count, long seed) {
+		TableMapRegistry registry = new TableMapRegistry();
+		HashMap<Long, TableMapEventBody> expected = new HashMap<Long, TableMapEventBody>();
+		Random random = new Random(seed);
+		while (expected.size() < count) {
+			long tableId = randomTableId(random);
+			TableMapEventBody tableMap = newTableMap(tableId, "t" + tableId);
+			registry.put(tableMap, false);
+			expected.put(tableId, tableMap);
+			if (Integer.bitCount(expected.size()) == 1) { // check all at the power of 2 sizes.
+				checkContent("resize to " + expected.size(), registry, expected);
+			}
+		}
+		checkContent("resize to " + count, registry, expected);
+	}
+	
+	/**
+	 * Random table maps are put in random transactions, with max idle transactions n a table map is
+	 * evicted at the end of the n-th transaction after it's last put.
+	 */
+	private static void testEviction(int count, long seed) {
+		final int maxIdle = 5;
+		TableMapRegistry registry = new TableMapRegistry();
+		registry.setMaxIdleTransactions(maxIdle);
+		check(registry.getMaxIdleTransactions() == maxIdle, "max idle transactions.");
+		HashMap<Long, TableMapEventBody> expected = new HashMap<Long, TableMapEventBody>();
+		HashMap<Long, Integer> lastSeen = new HashMap<Long, Integer>();
+		Random random = new Random(seed);
+		long[] tableIds = new long[200];
+		for (int i = 0; i < tableIds.length; i++) {
+			tableIds[i] = randomTableId(random);
+		}
+		int transaction = 0;
+		for (int i = 0; i < count; i++) {
+			int puts = random.nextInt(8);
+			for (int j = 0; j < puts; j++) {
+				long tableId = tableIds[random.nextInt(1 + (i % tableIds.length))];
+				TableMapEventBody tableMap = expected.get(tableId);
+				if (tableMap == null || random.nextInt(4) == 0) {
+					tableMap = newTableMap(tableId, "t" + tableId);
+				}
+				registry.put(tableMap, false);
+				expected.put(tableId, tableMap);
+				lastSeen.put(tableId, transaction);
+			}
+			registry.endTransaction();
+			transaction++;
+			for (Long tableId : lastSeen.keySet()) {
+				if (lastSeen.get(tableId) < transaction - maxIdle) {
+					expected.remove(tableId);
+				}
+			}
+			checkContent("eviction at transaction " + transaction, registry, expected);
+		}
+		registry.setMaxIdleTransactions(0);
+		for (int i = 0; i < maxIdle * 2; i++) {
+			registry.endTransaction();
+		}
+		checkContent("max idle transactions 0", registry, expected);
+	}
+	
+	/**
+	 * Many table ids in a small table share probe chains, the evicted ones are spread over the chains.
+	 * The table ids after an evicted slot must still be found, the evicted ones not, and they can be
+	 * put again.
+	 */
+	private static void testEvictionProbeChains(long seed) {
+		TableMapRegistry registry = new TableMapRegistry();
+		registry.setMaxIdleTransactions(1);
+		HashMap<Long, TableMapEventBody> expected = new HashMap<Long, TableMapEventBody>();
+		HashMap<Long, TableMapEventBody> evicted = new HashMap<Long, TableMapEventBody>();
+		Random random = new Random(seed);
+		for (int i = 0; i < 47; i++) { // below the load factor of 64 slots, no resize.
+			long tableId = i < 24 ? i * 64L : randomTableId(random); // sequential and random ids.
+			TableMapEventBody tableMap = newTableMap(tableId, "t" + tableId);
+			registry.put(tableMap, false);
+			(i % 2 == 0 ? evicted : expected).put(tableId, tableMap);
+		}
+		registry.endTransaction(); // transaction 0 ends, all are seen in the last transaction.
+		for (TableMapEventBody tableMap : expected.values()) {
+			registry.put(tableMap, false);
+		}
+		registry.endTransaction(); // transaction 1 ends, those not put in it are evicted.
+		checkContent("evicted probe chains", registry, expected);
+		for (Long tableId : evicted.keySet()) {
+			check(registry.get(tableId) == null, "evicted table id " + tableId + " is found.");
+		}
+		for (TableMapEventBody tableMap : evicted.values()) {
+			registry.put(tableMap, false);
+		}
+		expected.putAll(evicted);
+		checkContent("put again after eviction", registry, expected);
+	}
+	
+	/**
+	 * snapshot() is unmodifiable and not changed by later put, replace, eviction and clear.
+	 */
+	private static void testSnapshot() {
+		TableMapRegistry registry = new TableMapRegistry();
+		registry.setMaxIdleTransactions(1);
+		HashMap<Long, TableMapEventBody> expected = new HashMap<Long, TableMapEventBody>();
+		for (long tableId = 100; tableId < 200; tableId++) {
+			TableMapEventBody tableMap = newTableMap(tableId, "t" + tableId);
+			registry.put(tableMap, false);
+			expected.put(tableId, tableMap);
+		}
+		Map<Long, TableMapEventBody> snapshot = registry.snapshot();
+		check(snapshot.equals(expected), "snapshot differs from the table maps put.");
+		try {
+			snapshot.remove(100L);
+			throw new AssertionError("snapshot is modifiable.");
+		} catch (UnsupportedOperationException e) {
+		}
+		registry.put(newTableMap(100L, "replaced"), false);
+		registry.put(newTableMap(1000L, "added"), false);
+		check(snapshot.equals(expected), "snapshot is changed by put.");
+		registry.endTransaction();
+		registry.put(newTableMap(1000L, "added"), false);
+		registry.endTransaction();
+		check(registry.size() == 1, "size " + registry.size() + " after eviction, expected 1.");
+		check(snapshot.equals(expected), "snapshot is changed by eviction.");
+		check(registry.snapshot().size() == 1 && registry.snapshot().containsKey(1000L), "snapshot after eviction.");
+		registry.clear();
+		check(snapshot.equals(expected) && registry.snapshot().isEmpty(), "snapshot after clear.");
+	}
+	
+	private static void checkContent(String name, TableMapRegistry registry, Map<Long, TableMapEventBody> expected) {
+		check(registry.size() == expected.size(), name + ": size " + registry.size() + ", expected " + expected.size());
+		for (Map.Entry<Long, TableMapEventBody> entry : expected.entrySet()) {
+			check(registry.get(entry.getKey()) == entry.getValue(), name + ": table id " + entry.getKey()
+					+ " is not found.");
+		}
+		check(registry.snapshot().equals(expected), name + ": snapshot differs.");
+		cases++;
+	}
+	
+	private static long randomTableId(Random random) {
+		return random.nextLong() & 0xFFFFFFFFFFFFL; // 6 bytes
+	}
+	
+	private static RowDecoderPlan newPlan(TableMapEventBody tableMap) {
+		return RowDecoderPlan.compile(tableMap.getTableDefine(), ByteOrder.LITTLE_ENDIAN, true, "utf8");
+	}
+	
+	/**
+	 * A TABLE_MAP_EVENT body of test.table with one INT column.
+	 */
+	private static TableMapEventBody newTableMap(long tableId, String table) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (int i = 0; i < 6; i++) {
+			body.write((int) (tableId >>> (8 * i)));
+		}
+		body.write(1); // flags
+		body.write(0);
+		writeString(body, "test");
+		body.write(0);
+		writeString(body, table);
+		body.write(0);
+		body.write(1); // column count
+		body.write(0x03); // LONG
+		body.write(0); // no column meta
+		body.write(0); // NULL-bitmask
+		byte[] raw = body.toByteArray();
+		EventHeader header = new EventHeader(EventHeader.COMMON_HEADER_LENGTH_V4);
+		header.setEventType(EventType.TABLE_MAP_EVENT);
+		header.setEventSize(EventHeader.COMMON_HEADER_LENGTH_V4 + raw.length);
+		return new TableMapEventBody(ByteBuffer.wrap(raw).asReadOnlyBuffer(), header, META);
+	}
+	
+	private static BinlogFileMeta newMeta() {
+		BinlogFileMeta meta = new BinlogFileMeta("test.000001", ByteOrder.LITTLE_ENDIAN);
+		byte[] postHeaderLengths = new byte[40];
+		postHeaderLengths[EventType.TABLE_MAP_EVENT.getTypeCode() - 1] = 8;
+		meta.setPostHeaderLengths(postHeaderLengths);
+		meta.setChecksumLength(0);
+		return meta;
+	}
+	
+	private static void writeString(ByteArrayOutputStream out, String value) {
+		byte[] raw = value.getBytes(Charset.forName("UTF-8"));
+		out.write(raw.length);
+		out.write(raw, 0, raw.length);
+	}
+	
+	private static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+}